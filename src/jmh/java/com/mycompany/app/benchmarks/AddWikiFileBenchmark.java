@@ -0,0 +1,75 @@
+package com.mycompany.app.benchmarks;
+
+import com.mycompany.app.Indexer;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Indexer.addWikiFile on a generated fixture file. Scores are in documents
+ * per second. Every iteration writes a fresh index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AddWikiFileBenchmark {
+
+    // the fixture's last article is never indexed, see WikiFileReader
+    private static final int ARTICLES = 2000;
+
+    @Param({"false", "true"})
+    public boolean stem;
+
+    private File fixtureDir;
+    private File wikiFile;
+    private File indexDir;
+    private Indexer indexer;
+
+    @Setup(Level.Trial)
+    public void writeFixture() throws IOException {
+        fixtureDir = BenchmarkFixtures.tempDir("wiki-fixture");
+        wikiFile = new BenchmarkFixtures(42).writeWikiFile(new File(fixtureDir, "wiki-fixture.txt"), ARTICLES, 3000);
+    }
+
+    @Setup(Level.Iteration)
+    public void openIndexer() throws IOException {
+        indexDir = BenchmarkFixtures.tempDir("add-wiki-file-bench");
+        indexer = new Indexer(indexDir.getPath(), stem, false, true, new BM25Similarity());
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeIndexer() throws IOException {
+        indexer.close();
+        BenchmarkFixtures.deleteRecursively(indexDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFixture() {
+        BenchmarkFixtures.deleteRecursively(fixtureDir);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ARTICLES)
+    public void addWikiFile() {
+        indexer.addWikiFile(wikiFile);
+    }
+}
@@ -0,0 +1,62 @@
+package com.mycompany.app.benchmarks;
+
+import com.mycompany.app.Indexer;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Tokenization throughput of Indexer.buildCustomAnalyzer for every
+ * stem/stopwords combination. One operation analyzes 64 KB of text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyzerBenchmark {
+
+    @Param({"false", "true"})
+    public boolean stem;
+
+    @Param({"true", "false"})
+    public boolean stopwords;
+
+    private Analyzer analyzer;
+    private String text;
+
+    @Setup
+    public void setup() {
+        analyzer = Indexer.buildCustomAnalyzer(stem, stopwords);
+        text = new BenchmarkFixtures(42).text(64 * 1024);
+    }
+
+    @Benchmark
+    public int tokenize() throws IOException {
+        int tokens = 0;
+        try (TokenStream tokenStream = analyzer.tokenStream("content", text)) {
+            CharTermAttribute termAttr = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                tokens += termAttr.length();
+            }
+            tokenStream.end();
+        }
+        return tokens;
+    }
+}
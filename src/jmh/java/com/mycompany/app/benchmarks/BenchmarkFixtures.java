@@ -0,0 +1,163 @@
+package com.mycompany.app.benchmarks;
+
+import com.mycompany.app.Clue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Generates the benchmark data locally, so the benchmarks run offline and
+ * always see the same input. Text is drawn from a fixed English vocabulary
+ * plus made-up words, with a Zipf-like word distribution so stop words and
+ * common terms have long postings like in the wiki data.
+ */
+public class BenchmarkFixtures {
+
+    private static final String[] ENGLISH = {
+            "the", "of", "and", "in", "to", "a", "was", "is", "for", "on", "as", "by", "with", "he",
+            "that", "at", "from", "his", "it", "an", "were", "are", "which", "this", "be", "or", "had",
+            "first", "new", "after", "city", "state", "war", "world", "year", "years", "team", "film",
+            "school", "university", "history", "national", "american", "british", "music", "album",
+            "released", "played", "born", "known", "called", "named", "became", "made", "built",
+            "founded", "elected", "president", "government", "company", "church", "river", "island",
+            "county", "century", "series", "season", "league", "players", "songs", "books", "wrote",
+            "writing", "written", "running", "ran", "runs", "studies", "studied", "studying", "children",
+            "women", "men", "mice", "geese", "better", "best", "worse", "leaves", "leaving", "left",
+            "standards", "society", "missile", "declaration", "inscription", "incidents", "drugs",
+            "newspaper", "published", "award", "awards", "winning", "won", "golden", "globe", "actor",
+            "actress", "character", "joker", "pulitzer", "circulation", "capital", "nation's", "u.s.",
+            "europe", "france", "germany", "china", "japan", "london", "paris", "washington", "texas"
+    };
+    private static final int MADE_UP_WORDS = 20000;
+    private static final String[] CATEGORIES = {
+            "American films", "British politicians", "Newspapers published in the United States",
+            "Golden Globe winners", "Islands of China", "1955 establishments", "Rock music albums",
+            "Universities in London", "Cold War missiles", "Standards organizations"
+    };
+
+    private final Random random;
+    private final String[] vocabulary;
+    private final double[] cumulative;
+
+    public BenchmarkFixtures(long seed) {
+        this.random = new Random(seed);
+        this.vocabulary = new String[ENGLISH.length + MADE_UP_WORDS];
+        System.arraycopy(ENGLISH, 0, vocabulary, 0, ENGLISH.length);
+        for (int i = 0; i < MADE_UP_WORDS; i++) {
+            vocabulary[ENGLISH.length + i] = madeUpWord(i);
+        }
+        // Zipf: the word of rank r is drawn with weight 1 / r
+        this.cumulative = new double[vocabulary.length];
+        double sum = 0;
+        for (int i = 0; i < vocabulary.length; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    public String word() {
+        int i = Arrays.binarySearch(cumulative, random.nextDouble());
+        return vocabulary[i < 0 ? Math.min(-i - 1, vocabulary.length - 1) : i];
+    }
+
+    /*
+     * Sentences of random words, about the given number of characters.
+     */
+    public String text(int chars) {
+        StringBuilder sb = new StringBuilder(chars + 32);
+        int sentence = 0;
+        while (sb.length() < chars) {
+            String word = word();
+            if (sentence == 0)
+                word = Character.toUpperCase(word.charAt(0)) + word.substring(1);
+            sb.append(word);
+            if (++sentence > 8 + random.nextInt(12)) {
+                sb.append(". ");
+                sentence = 0;
+            } else {
+                sb.append(' ');
+            }
+        }
+        return sb.toString();
+    }
+
+    /*
+     * Writes an aggregated wiki file in the same format as the
+     * wiki-subset-20140602 files: a [[title]] line, a CATEGORIES: line and
+     * content lines per article.
+     */
+    public File writeWikiFile(File file, int articles, int charsPerArticle) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            for (int i = 0; i < articles; i++) {
+                out.println("[[" + title(i) + "]]");
+                out.println();
+                out.println("CATEGORIES: " + CATEGORIES[random.nextInt(CATEGORIES.length)] + ", "
+                        + CATEGORIES[random.nextInt(CATEGORIES.length)]);
+                out.println();
+                int written = 0;
+                while (written < charsPerArticle) {
+                    String paragraph = text(400 + random.nextInt(400));
+                    out.println(paragraph);
+                    out.println();
+                    written += paragraph.length();
+                }
+            }
+            // the last article of a file is never indexed, see WikiFileReader
+            out.println("[[End of file]]");
+        }
+        return file;
+    }
+
+    /*
+     * Clues for the articles of writeWikiFile, answered by article titles.
+     */
+    public List<Clue> clues(int count, int articles) {
+        List<Clue> clues = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String categories = CATEGORIES[random.nextInt(CATEGORIES.length)].toUpperCase();
+            clues.add(new Clue(categories, text(60 + random.nextInt(80)), title(random.nextInt(articles))));
+        }
+        return clues;
+    }
+
+    public static File tempDir(String prefix) throws IOException {
+        File dir = Files.createTempDirectory(prefix).toFile();
+        dir.deleteOnExit();
+        return dir;
+    }
+
+    public static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                deleteRecursively(child);
+        }
+        file.delete();
+    }
+
+    private static String title(int i) {
+        return "Article " + i;
+    }
+
+    private static String madeUpWord(int i) {
+        String letters = "bcdfghjklmnprstvz";
+        String vowels = "aeiou";
+        StringBuilder sb = new StringBuilder();
+        int n = i + 1;
+        while (n > 0) {
+            sb.append(letters.charAt(n % letters.length())).append(vowels.charAt((n / 7) % vowels.length()));
+            n /= letters.length();
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,60 @@
+package com.mycompany.app.benchmarks;
+
+import com.mycompany.app.Indexer;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Indexer.lemmatize (CoreNLP tokenize, ssplit, pos, lemma) for texts of a
+ * few sizes; divide the time by kb for the cost per KB.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class LemmatizeBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int kb;
+
+    private File indexDir;
+    private Indexer indexer;
+    private String text;
+
+    @Setup
+    public void setup() throws IOException {
+        indexDir = BenchmarkFixtures.tempDir("lemmatize-bench");
+        indexer = new Indexer(indexDir.getPath(), false, true, true, new BM25Similarity());
+        text = new BenchmarkFixtures(42).text(kb * 1024);
+        indexer.lemmatize("load the models."); // the pipeline is only created on first use
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        indexer.close();
+        BenchmarkFixtures.deleteRecursively(indexDir);
+    }
+
+    @Benchmark
+    public List<String> lemmatize() {
+        return indexer.lemmatize(text);
+    }
+}
@@ -0,0 +1,81 @@
+package com.mycompany.app.benchmarks;
+
+import com.mycompany.app.AnswerEngine;
+import com.mycompany.app.Clue;
+import com.mycompany.app.DirectQueryBuilder;
+import com.mycompany.app.Indexer;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.search.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The query building paths for every stem/stopwords analyzer: the query
+ * parser path (AnswerEngine.buildParsedQuery) against DirectQueryBuilder.
+ * Every invocation builds the next of a fixed list of generated clues; run
+ * with -prof gc for the bytes allocated per query. Setup fails if the two
+ * paths do not build the same queries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBuilderBenchmark {
+
+    private static final int CLUES = 200;
+
+    @Param({"false", "true"})
+    public boolean stem;
+
+    @Param({"true", "false"})
+    public boolean stopwords;
+
+    private Analyzer analyzer;
+    private DirectQueryBuilder direct;
+    private List<Clue> clues;
+    private int next;
+
+    @Setup
+    public void setup() {
+        analyzer = Indexer.buildCustomAnalyzer(stem, stopwords);
+        direct = new DirectQueryBuilder(analyzer);
+        clues = new BenchmarkFixtures(42).clues(CLUES, 1000);
+        for (Clue clue : clues) {
+            Query parsed = AnswerEngine.buildParsedQuery(analyzer, clue.getContent(), clue.getCategories());
+            Query built = direct.build(clue.getContent(), clue.getCategories());
+            if (parsed == null || !parsed.toString().equals(built.toString()))
+                throw new IllegalStateException("paths differ for " + clue.getContent() + ": " + parsed + " / " + built);
+        }
+    }
+
+    @Benchmark
+    public Query parser() {
+        Clue clue = clues.get(nextClue());
+        return AnswerEngine.buildParsedQuery(analyzer, clue.getContent(), clue.getCategories());
+    }
+
+    @Benchmark
+    public Query direct() {
+        Clue clue = clues.get(nextClue());
+        return direct.build(clue.getContent(), clue.getCategories());
+    }
+
+    private int nextClue() {
+        next = (next + 1) % CLUES;
+        return next;
+    }
+}
@@ -0,0 +1,113 @@
+package com.mycompany.app.benchmarks;
+
+import com.mycompany.app.AnswerEngine;
+import com.mycompany.app.Clue;
+import com.mycompany.app.Indexer;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.LMJelinekMercerSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Query building and search latency on a small generated index (stemmed,
+ * stop words kept, Jelinek-Mercer like JMStemIndex), the search at several
+ * top-N sizes. Every invocation runs the next of a fixed list of generated
+ * clues. The query is built by AnswerEngine.buildQuery, as for a clue.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    private static final int ARTICLES = 5000;
+    private static final int CLUES = 200;
+
+    /*
+     * The index and the clues, without the top-N parameter, so buildQuery
+     * runs once rather than once per size.
+     */
+    @State(Scope.Benchmark)
+    public static class Engine {
+
+        private File dataDir;
+        private AnswerEngine engine;
+        private List<Clue> clues;
+        private Query[] queries;
+        private int next;
+
+        @Setup
+        public void setup() throws IOException {
+            BenchmarkFixtures fixtures = new BenchmarkFixtures(42);
+            dataDir = BenchmarkFixtures.tempDir("search-bench");
+            File wikiFile = fixtures.writeWikiFile(new File(dataDir, "wiki-fixture.txt"), ARTICLES, 2000);
+            String indexPath = new File(dataDir, "index").getPath();
+
+            Similarity similarity = new LMJelinekMercerSimilarity(0.1F);
+            Indexer indexer = new Indexer(indexPath, true, false, true, similarity);
+            indexer.addWikiFile(wikiFile);
+            indexer.close();
+
+            engine = new AnswerEngine(indexPath, true, false, true, similarity);
+            engine.setResultCache(null); // measure the search, not the cache
+            clues = fixtures.clues(CLUES, ARTICLES - 1);
+            queries = new Query[CLUES];
+            for (int i = 0; i < CLUES; i++) {
+                queries[i] = engine.buildQuery(clues.get(i).getContent(), clues.get(i).getCategories());
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            engine.close();
+            BenchmarkFixtures.deleteRecursively(dataDir);
+        }
+
+        private int nextClue() {
+            next = (next + 1) % CLUES;
+            return next;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class TopN {
+
+        @Param({"10", "100", "1000", "10000"})
+        public int topN;
+    }
+
+    @Benchmark
+    public Query buildQuery(Engine state) {
+        Clue clue = state.clues.get(state.nextClue());
+        return state.engine.buildQuery(clue.getContent(), clue.getCategories());
+    }
+
+    @Benchmark
+    public TopDocs search(Engine state, TopN size) {
+        return state.engine.searchIndex(state.queries[state.nextClue()], size.topN);
+    }
+
+    @Benchmark
+    public TopDocs buildQueryAndSearch(Engine state, TopN size) {
+        Clue clue = state.clues.get(state.nextClue());
+        return state.engine.searchIndex(state.engine.buildQuery(clue.getContent(), clue.getCategories()), size.topN);
+    }
+}
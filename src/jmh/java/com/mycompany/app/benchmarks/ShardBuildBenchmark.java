@@ -0,0 +1,63 @@
+package com.mycompany.app.benchmarks;
+
+import org.apache.lucene.search.similarities.LMJelinekMercerSimilarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Time to build the ShardSearchBenchmark data as 1, 2 and 4 shards, every
+ * shard written by its own Indexer at the same time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ShardBuildBenchmark {
+
+    @Param({"1", "2", "4"})
+    public int shards;
+
+    private File dataDir;
+    private List<File> files;
+    private File index;
+
+    @Setup(Level.Trial)
+    public void writeFixture() throws IOException {
+        dataDir = BenchmarkFixtures.tempDir("shard-build-bench");
+        files = ShardSearchBenchmark.writeFiles(new BenchmarkFixtures(42), new File(dataDir, "data"));
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteIndex() {
+        BenchmarkFixtures.deleteRecursively(index);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFixture() {
+        BenchmarkFixtures.deleteRecursively(dataDir);
+    }
+
+    @Benchmark
+    public void build() throws IOException {
+        index = new File(dataDir, "index");
+        ShardSearchBenchmark.build(index, files, shards, new LMJelinekMercerSimilarity(0.1F));
+    }
+}
@@ -0,0 +1,111 @@
+package com.mycompany.app.benchmarks;
+
+import com.mycompany.app.AnswerEngine;
+import com.mycompany.app.Clue;
+import com.mycompany.app.EngineOptions;
+import com.mycompany.app.Indexer;
+import com.mycompany.app.ShardedIndex;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.LMJelinekMercerSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Search latency over a ShardedIndex for every combination of shard count
+ * and EngineOptions.searchThreads. One shard is a plain index. The gain
+ * from more shards or threads is bounded by the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShardSearchBenchmark {
+
+    static final int FILES = 8;
+    static final int ARTICLES_PER_FILE = 1000;
+    private static final int CLUES = 200;
+    private static final int TOP_N = 100;
+
+    @Param({"1", "2", "4"})
+    public int shards;
+
+    @Param({"1", "2", "4"})
+    public int searchThreads;
+
+    private File dataDir;
+    private AnswerEngine engine;
+    private Query[] queries;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFixtures fixtures = new BenchmarkFixtures(42);
+        dataDir = BenchmarkFixtures.tempDir("shard-search-bench");
+        List<File> files = writeFiles(fixtures, new File(dataDir, "data"));
+        File index = new File(dataDir, "index");
+        Similarity similarity = new LMJelinekMercerSimilarity(0.1F);
+        build(index, files, shards, similarity);
+
+        EngineOptions options = new EngineOptions();
+        options.searchThreads = searchThreads;
+        engine = new AnswerEngine(index.getPath(), true, false, true, similarity, options);
+        engine.setResultCache(null); // measure the search, not the cache
+        List<Clue> clues = fixtures.clues(CLUES, FILES * ARTICLES_PER_FILE - 1);
+        queries = new Query[CLUES];
+        for (int i = 0; i < CLUES; i++) {
+            queries[i] = engine.buildQuery(clues.get(i).getContent(), clues.get(i).getCategories());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        engine.close();
+        BenchmarkFixtures.deleteRecursively(dataDir);
+    }
+
+    @Benchmark
+    public TopDocs search() {
+        next = (next + 1) % CLUES;
+        return engine.searchIndex(queries[next], TOP_N);
+    }
+
+    static List<File> writeFiles(BenchmarkFixtures fixtures, File dir) throws IOException {
+        dir.mkdirs();
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < FILES; i++) {
+            files.add(fixtures.writeWikiFile(new File(dir, "wiki-" + i + ".txt"), ARTICLES_PER_FILE, 2000));
+        }
+        return files;
+    }
+
+    static void build(File index, List<File> files, int shards, Similarity similarity) throws IOException {
+        if (shards > 1) {
+            ShardedIndex.build(index.toPath(), files, shards, shards,
+                    path -> new Indexer(path, true, false, true, similarity));
+            return;
+        }
+        Indexer indexer = new Indexer(index.getPath(), true, false, true, similarity);
+        indexer.refreshWikiFiles(files, 1);
+        indexer.close();
+    }
+}
@@ -4,84 +4,566 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MultiCollector;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ReferenceManager;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherFactory;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.LMJelinekMercerSimilarity;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Accountable;
 
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /*
+ * Searches are run through a SearcherManager, so the index can be reopened
+ * while the engine is in use (see refresh and startRefresh). Every search
+ * acquires the current searcher and releases it when done, so a reader is
+ * only closed once no query uses it any more.
  *
+ * Doc ids are only valid for the reader they came from: after a refresh,
+ * a doc id from an earlier search may point at another document. Callers
+ * that refresh while searching should acquire a searcher and pass it to
+ * search and getTitle, then release it.
+ *
+ * An index path may also hold a ShardedIndex, which is searched as one
+ * index. With EngineOptions.searchThreads above 1 the segments (and
+ * shards) of a search are scored in parallel.
  */
 public class AnswerEngine {
     private final Similarity similarity;// = new BM25Similarity();
     //private static Similarity similarity = new LMJelinekMercerSimilarity(0.1F);
     private final Analyzer analyzer;
+    private final DirectQueryBuilder queryBuilder;
 
     private final boolean stem;
     private final boolean lemmatize;
     private final boolean stopwords;
+    private final String contentField;
+    private final String categoriesField;
+
+    private EngineOptions options; // see configure
+    private Directory directory; // null for a sharded index
+    private Path shardedPath; // null unless sharded
+    private ReferenceManager<IndexSearcher> searcherManager;
+    private ExecutorService searchExecutor; // null to search on the calling thread
+    private ScheduledExecutorService refresher;
+    private TitleLookup titleLookup;
+    private long titleLookupVersion;
+    // whether the content field has positions, as of the reader version
+    private boolean contentPositions;
+    private long contentPositionsVersion = -1;
+    private volatile QueryResultCache resultCache = new QueryResultCache();
+    private volatile CategoryMode categoryMode;
+    private volatile TermPruning termPruning;
+    private volatile float maxDfRatio;
+    private final CategoryFilterCache categoryCache = new CategoryFilterCache();
+    private QueryLog queryLog; // null if off
+    private volatile CascadeSearch cascade;
+    private final String gaugeScope = Metrics.get().newScope("engine");
 
-    private Directory directory;
-    private DirectoryReader reader;
-    private IndexSearcher searcher;
+    private static final LatencyHistogram BUILD_TIME = Metrics.get().timer("query.build");
+    private static final LatencyHistogram SEARCH_TIME = Metrics.get().timer("query.search");
+    private static final LatencyHistogram TITLE_TIME = Metrics.get().timer("query.titles");
+    private static final LongAdder QUERIES = Metrics.get().counter("query.count");
+    private static final LongAdder HITS = Metrics.get().counter("query.hits");
 
     /*
-     * Construct an answer engine from an input filepath.
+     * Construct an answer engine from an input filepath. The directory is
+     * opened as the options' DirectoryType. A sharded index is opened as
+     * one.
      */
     public AnswerEngine(String dirFilePath, boolean stem, boolean lemmatize, boolean stopwords, Similarity s) {
+        this(dirFilePath, stem, lemmatize, stopwords, s, new EngineOptions());
+    }
+
+    public AnswerEngine(String dirFilePath, boolean stem, boolean lemmatize, boolean stopwords, Similarity s,
+                        EngineOptions options) {
+        configure(options);
         this.stem = stem;
         this.lemmatize = lemmatize;
         this.stopwords = stopwords;
         this.similarity = s;
+        this.contentField = "content";
+        this.categoriesField = "categories";
 
-        analyzer = Indexer.buildCustomAnalyzer(this.stem, this.stopwords);
+        analyzer = Indexer.buildCustomAnalyzer(this.stem, lemmatize && LemmaDictionary.forQueries(options),
+                this.stopwords);
+        queryBuilder = new DirectQueryBuilder(analyzer);
         try {
-            this.directory = FSDirectory.open(Paths.get(dirFilePath));
-            this.reader = DirectoryReader.open(this.directory);
-            this.searcher = new IndexSearcher(this.reader);
-            this.searcher.setSimilarity(this.similarity);
+            open(Paths.get(dirFilePath));
         } catch (IOException e) {
             e.printStackTrace();
             System.exit(1);
         }
+        registerGauges();
     }
 
     /*
      * Construct an answer engine from a Directory.
      */
     public AnswerEngine(Directory directory, boolean stem, boolean lemmatize, boolean stopwords, Similarity s) {
+        this(directory, stem, lemmatize, stopwords, s, new EngineOptions());
+    }
+
+    public AnswerEngine(Directory directory, boolean stem, boolean lemmatize, boolean stopwords, Similarity s,
+                        EngineOptions options) {
+        configure(options);
         this.stem = stem;
         this.lemmatize = lemmatize;
         this.stopwords = stopwords;
         this.similarity = s;
+        this.contentField = "content";
+        this.categoriesField = "categories";
 
-        analyzer = Indexer.buildCustomAnalyzer(this.stem, this.stopwords);
+        analyzer = Indexer.buildCustomAnalyzer(this.stem, lemmatize && LemmaDictionary.forQueries(options),
+                this.stopwords);
+        queryBuilder = new DirectQueryBuilder(analyzer);
         try {
             this.directory = directory;
-            this.reader = DirectoryReader.open(this.directory);
-            this.searcher = new IndexSearcher(this.reader);
-            this.searcher.setSimilarity(this.similarity);
+            this.searcherManager = new SearcherManager(this.directory, newSearcherFactory());
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        registerGauges();
+    }
+
+    /*
+     * Construct an answer engine over one variant of a multi-variant index
+     * (see IndexVariant).
+     */
+    public AnswerEngine(String dirFilePath, IndexVariant variant, Similarity s) {
+        this(dirFilePath, variant, s, new EngineOptions());
+    }
+
+    public AnswerEngine(String dirFilePath, IndexVariant variant, Similarity s, EngineOptions options) {
+        configure(options);
+        this.stem = variant.isStem();
+        this.lemmatize = variant.isLemmatize();
+        this.stopwords = variant.isStopwords();
+        this.similarity = s;
+        this.contentField = variant.contentField();
+        this.categoriesField = variant.categoriesField();
+
+        analyzer = variant.buildQueryAnalyzer(options);
+        queryBuilder = new DirectQueryBuilder(analyzer, contentField, categoriesField);
+        try {
+            open(Paths.get(dirFilePath));
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        registerGauges();
+    }
+
+    /*
+     * Construct an answer engine that searches the documents of a live
+     * IndexWriter (such as Indexer.getIndexWriter()) before they are
+     * committed. A refresh makes everything added since visible.
+     */
+    public AnswerEngine(IndexWriter writer, boolean stem, boolean lemmatize, boolean stopwords, Similarity s) {
+        this(writer, stem, lemmatize, stopwords, s, new EngineOptions());
+    }
+
+    public AnswerEngine(IndexWriter writer, boolean stem, boolean lemmatize, boolean stopwords, Similarity s,
+                        EngineOptions options) {
+        configure(options);
+        this.stem = stem;
+        this.lemmatize = lemmatize;
+        this.stopwords = stopwords;
+        this.similarity = s;
+        this.contentField = "content";
+        this.categoriesField = "categories";
+
+        analyzer = Indexer.buildCustomAnalyzer(this.stem, lemmatize && LemmaDictionary.forQueries(options),
+                this.stopwords);
+        queryBuilder = new DirectQueryBuilder(analyzer);
+        try {
+            this.directory = writer.getDirectory();
+            this.searcherManager = new SearcherManager(writer, newSearcherFactory());
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        registerGauges();
+    }
+
+    /*
+     * Construct an answer engine over one variant of a multi-variant index,
+     * sharing a reader that is already open. The engine takes its own
+     * reference to the reader, so every engine sharing it should be closed.
+     */
+    public AnswerEngine(DirectoryReader reader, IndexVariant variant, Similarity s) {
+        this(reader, variant, s, new EngineOptions());
+    }
+
+    public AnswerEngine(DirectoryReader reader, IndexVariant variant, Similarity s, EngineOptions options) {
+        configure(options);
+        this.stem = variant.isStem();
+        this.lemmatize = variant.isLemmatize();
+        this.stopwords = variant.isStopwords();
+        this.similarity = s;
+        this.contentField = variant.contentField();
+        this.categoriesField = variant.categoriesField();
+
+        analyzer = variant.buildQueryAnalyzer(options);
+        queryBuilder = new DirectQueryBuilder(analyzer, contentField, categoriesField);
+        this.directory = reader.directory();
+        reader.incRef();
+        try {
+            this.searcherManager = new SearcherManager(reader, newSearcherFactory());
         } catch (IOException e) {
             e.printStackTrace();
             System.exit(1);
         }
+        registerGauges();
+    }
+
+    /*
+     * Construct an answer engine over one variant of a sharded multi-variant
+     * index, sharing shard readers that are already open. The engine takes
+     * its own reference to every shard, so every engine sharing them should
+     * be closed.
+     */
+    private AnswerEngine(List<DirectoryReader> shards, Path shardedPath, IndexVariant variant, Similarity s,
+                         EngineOptions options) throws IOException {
+        configure(options);
+        this.stem = variant.isStem();
+        this.lemmatize = variant.isLemmatize();
+        this.stopwords = variant.isStopwords();
+        this.similarity = s;
+        this.contentField = variant.contentField();
+        this.categoriesField = variant.categoriesField();
+
+        analyzer = variant.buildQueryAnalyzer(options);
+        queryBuilder = new DirectQueryBuilder(analyzer, contentField, categoriesField);
+        this.shardedPath = shardedPath;
+        for (DirectoryReader shard : shards)
+            shard.incRef();
+        try {
+            this.searcherManager = new ShardSearcherManager(new ArrayList<>(shards), newSearcherFactory());
+        } catch (IOException | RuntimeException e) {
+            for (DirectoryReader shard : shards)
+                shard.decRef();
+            throw e;
+        }
+        registerGauges();
+    }
+
+    /*
+     * Takes the settings of the options, before anything is opened.
+     */
+    private void configure(EngineOptions options) {
+        this.options = options.copy();
+        this.searchExecutor = options.searchThreads > 1
+                ? ThreadPools.newDaemonExecutor(options.searchThreads, "search") : null;
+        this.categoryMode = options.categoryMode;
+        this.termPruning = options.termPruning;
+        this.maxDfRatio = options.maxDfRatio;
+        this.queryLog = openQueryLog(options);
+        this.cascade = options.newCascade();
+    }
+
+    private void open(Path path) throws IOException {
+        if (ShardedIndex.isSharded(path)) {
+            this.shardedPath = path;
+            this.searcherManager = new ShardSearcherManager(ShardedIndex.open(path, options.directory),
+                    newSearcherFactory());
+        } else {
+            this.directory = options.directory.open(path);
+            this.searcherManager = new SearcherManager(this.directory, newSearcherFactory());
+        }
+    }
+
+    private SearcherFactory newSearcherFactory() {
+        return new SearcherFactory() {
+            @Override
+            public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) {
+                IndexSearcher searcher = new IndexSearcher(reader, searchExecutor);
+                searcher.setSimilarity(similarity);
+                return searcher;
+            }
+        };
+    }
+
+    /*
+     * The current searcher. Every acquire must be followed by a release.
+     */
+    public IndexSearcher acquire() throws IOException {
+        return searcherManager.acquire();
+    }
+
+    public void release(IndexSearcher searcher) {
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+     * Reopens the reader if the index has changed, waiting for any refresh
+     * already running. Searches in flight finish on the old reader. Returns
+     * true if a new reader is now in use.
+     */
+    public boolean refresh() throws IOException {
+        long version = getVersion();
+        searcherManager.maybeRefreshBlocking();
+        return getVersion() != version;
+    }
+
+    /*
+     * Refreshes in the background every intervalMillis until stopRefresh or
+     * close.
+     */
+    public synchronized void startRefresh(long intervalMillis) {
+        stopRefresh();
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "answer-engine-refresh");
+            t.setDaemon(true);
+            return t;
+        });
+        refresher.scheduleWithFixedDelay(() -> {
+            try {
+                searcherManager.maybeRefresh();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopRefresh() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    /*
+     * Version of the current reader; changes whenever a refresh opens a new
+     * one.
+     */
+    public long getVersion() throws IOException {
+        IndexSearcher searcher = acquire();
+        try {
+            return ShardSearcherManager.version(searcher.getIndexReader());
+        } finally {
+            release(searcher);
+        }
+    }
+
+    /*
+     * Heap used by the open index ("engine.N.ramBytes", from the segment
+     * readers) and its size on disk ("engine.N.sizeBytes"), until close.
+     */
+    private void registerGauges() {
+        Metrics.get().gauge(gaugeScope + ".ramBytes", this::ramBytesUsed);
+        Metrics.get().gauge(gaugeScope + ".sizeBytes", () -> directory != null
+                ? Indexer.directorySize(directory) : ShardedIndex.size(shardedPath));
+    }
+
+    /*
+     * Heap held by the segment readers (terms index, norms, doc values and
+     * so on), or -1 once the reader is closed.
+     */
+    public long ramBytesUsed() {
+        try {
+            IndexSearcher searcher = acquire();
+            try {
+                long bytes = 0;
+                for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                    if (leaf.reader() instanceof Accountable)
+                        bytes += ((Accountable) leaf.reader()).ramBytesUsed();
+                }
+                return bytes;
+            } finally {
+                release(searcher);
+            }
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /*
+     * Switches to another variant of the same multi-variant index, without
+     * opening the directory (or the shards) again. The new engine has the
+     * options of this one.
+     */
+    public AnswerEngine withVariant(IndexVariant variant, Similarity s) throws IOException {
+        IndexSearcher searcher = acquire();
+        try {
+            IndexReader reader = searcher.getIndexReader();
+            if (reader instanceof ShardSearcherManager.ShardReader)
+                return new AnswerEngine(((ShardSearcherManager.ShardReader) reader).shards, shardedPath, variant, s,
+                        options);
+            return new AnswerEngine((DirectoryReader) reader, variant, s, options);
+        } finally {
+            release(searcher);
+        }
     }
 
     public TopDocs searchIndex(Query q, int n) {
         try {
-            TopDocs topDocs = this.searcher.search(q, n);
-            return topDocs;
+            IndexSearcher searcher = acquire();
+            try {
+                return searchIndex(searcher, q, n);
+            } finally {
+                release(searcher);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /*
+     * A null query (DirectQueryBuilder had too many clauses) matches
+     * nothing.
+     */
+    public TopDocs searchIndex(IndexSearcher searcher, Query q, int n) throws IOException {
+        if (q == null)
+            return noHits();
+        long start = System.nanoTime();
+        TopDocs topDocs = searcher.search(q, n);
+        SEARCH_TIME.recordSince(start);
+        countQuery(topDocs.totalHits);
+        if (queryLog != null)
+            queryLog.log(searcher, q, topDocs.totalHits, System.nanoTime() - start);
+        return topDocs;
+    }
+
+    /*
+     * Builds and runs the query for content and categories, going through
+     * the result cache if there is one. Categories may be null for a plain
+     * query string. Null if the search failed or no query could be built
+     * (too many clauses, or a query string that does not parse).
+     */
+    public TopDocs search(String content, String categories, int n) {
+        try {
+            IndexSearcher searcher = acquire();
+            try {
+                return search(searcher, content, categories, n);
+            } finally {
+                release(searcher);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /*
+     * Same as search(content, categories, n) on a searcher from acquire. The
+     * cached results are tied to the version of the searcher's reader. Null
+     * if no query could be built.
+     */
+    public TopDocs search(IndexSearcher searcher, String content, String categories, int n)
+            throws IOException {
+        QueryResultCache cache = this.resultCache;
+        if (cache == null)
+            return searchUncached(searcher, content, categories, n);
+
+        QueryResultCache.Key key = new QueryResultCache.Key(content, categories, n, similarity.toString(),
+                searchSettings());
+        long generation = ShardSearcherManager.version(searcher.getIndexReader());
+        TopDocs result = cache.get(key, generation);
+        if (result == null) {
+            result = searchUncached(searcher, content, categories, n);
+            if (result != null)
+                cache.put(key, result, generation);
+        }
+        return result;
+    }
+
+    /*
+     * The settings that change search results, for the result cache key, so
+     * changing one of them never returns results found under the old value.
+     */
+    private String searchSettings() {
+        CascadeSearch cascade = this.cascade;
+        return categoryMode + "/" + termPruning + "/" + maxDfRatio + "/" + (cascade == null ? "" : cascade);
+    }
+
+    /*
+     * A clue goes through the CascadeSearch if there is one, anything else
+     * is one search.
+     */
+    private TopDocs searchUncached(IndexSearcher searcher, String content, String categories, int n)
+            throws IOException {
+        CascadeSearch cascade = this.cascade;
+        if (cascade == null || categories == null) {
+            Query query = buildQuery(content, categories);
+            return query == null ? null : searchIndex(searcher, query, n);
+        }
+        CascadeSearch.Result result = cascade.search(this, searcher, content, categories);
+        if (result.getStages() == 0)
+            return null;
+        TopDocs topDocs = result.topDocs(n);
+        countQuery(topDocs.totalHits);
+        return topDocs;
+    }
+
+    private static TopDocs noHits() {
+        return new TopDocs(0, new ScoreDoc[0], Float.NaN);
+    }
+
+    private static void countQuery(long totalHits) {
+        QUERIES.increment();
+        HITS.add(totalHits);
+    }
+
+    /*
+     * Searches for the top n hits and, in the same pass, the rank of the
+     * gold answer with the rank collector. A null query matches nothing and
+     * leaves the collector at its maxRank.
+     */
+    public TopDocs searchIndex(Query q, int n, GoldRankCollector rankCollector) {
+        if (q == null)
+            return noHits();
+        try {
+            TopScoreDocCollector topCollector = TopScoreDocCollector.create(Math.max(1, n));
+            IndexSearcher searcher = acquire();
+            try {
+                long start = System.nanoTime();
+                rankCollector.scoreGoldDocs(searcher, q);
+                searcher.search(q, MultiCollector.wrap(topCollector, rankCollector));
+                SEARCH_TIME.recordSince(start);
+                countQuery(topCollector.getTotalHits());
+                if (queryLog != null)
+                    queryLog.log(searcher, q, topCollector.getTotalHits(), System.nanoTime() - start);
+            } finally {
+                release(searcher);
+            }
+            return topCollector.topDocs();
         } catch (IOException e) {
             e.printStackTrace();
             return null;
@@ -89,20 +571,132 @@ public class AnswerEngine {
     }
 
     /*
-     * Notice the default field to search is content.
+     * Notice the default field to search is content. Quoted phrases become
+     * plain term queries when the index has no positions (IndexProfile.LEAN).
      */
     public Query buildQuery(String query) {
         try {
-            return new QueryParser("content", analyzer).parse(query);
+            boolean phrases = hasContentPositions();
+            return new QueryParser(contentField, analyzer) {
+                @Override
+                protected Query getFieldQuery(String field, String queryText, boolean quoted) throws ParseException {
+                    return super.getFieldQuery(field, queryText, quoted && phrases);
+                }
+            }.parse(query);
         } catch (ParseException e) {
             return null;
         }
     }
 
+    /*
+     * Whether the content field is indexed with positions, true if it is not
+     * in the index at all. The field infos are only merged again when a
+     * refresh opened a new reader.
+     */
+    private boolean hasContentPositions() {
+        try {
+            IndexSearcher searcher = acquire();
+            try {
+                IndexReader reader = searcher.getIndexReader();
+                long version = ShardSearcherManager.version(reader);
+                synchronized (this) {
+                    if (contentPositionsVersion != version) {
+                        FieldInfo info = MultiFields.getMergedFieldInfos(reader).fieldInfo(contentField);
+                        contentPositions = info == null
+                                || info.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) >= 0;
+                        contentPositionsVersion = version;
+                    }
+                    return contentPositions;
+                }
+            } finally {
+                release(searcher);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return true;
+        }
+    }
+
     /*
      * Overloads build query, so we can add the category as a parameter.
+     * Categories may be null, in which case content is a plain query.
+     *
+     * The query is built straight from the analyzer by DirectQueryBuilder;
+     * see buildParsedQuery for the query parser version it replaces.
      */
     public Query buildQuery(String content, String categories) {
+        long start = System.nanoTime();
+        Query query = categories == null ? buildQuery(content) : pruneTerms(buildClueQuery(content, categories));
+        BUILD_TIME.recordSince(start);
+        if (options.printQueries && categories != null)
+            System.out.println(query);
+        return query;
+    }
+
+    /*
+     * The query for a clue in the engine's CategoryMode. In FILTER and BOOST
+     * the content clauses stay as they are, and the category words become
+     * one cached CategoryFilterQuery.
+     */
+    private Query buildClueQuery(String content, String categories) {
+        CategoryMode mode = categoryMode;
+        if (mode == CategoryMode.SCORED)
+            return queryBuilder.build(content, categories);
+        BooleanQuery contentQuery = (BooleanQuery) queryBuilder.build(content, "");
+        List<Term> terms = queryBuilder.categoryTerms(categories);
+        if (contentQuery == null || terms.isEmpty())
+            return contentQuery;
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (BooleanClause clause : contentQuery.clauses()) {
+            builder.add(clause);
+        }
+        Query filter = new CategoryFilterQuery(categoryCache, terms);
+        if (mode == CategoryMode.FILTER) {
+            builder.add(filter, BooleanClause.Occur.FILTER);
+            if (!contentQuery.clauses().isEmpty())
+                builder.setMinimumNumberShouldMatch(1);
+        } else {
+            builder.add(new BoostQuery(filter, options.categoryBoost), BooleanClause.Occur.SHOULD);
+        }
+        return builder.build();
+    }
+
+    /*
+     * Applies the engine's TermPruning, with the document frequencies of the
+     * current reader.
+     */
+    private Query pruneTerms(Query query) {
+        TermPruning pruning = termPruning;
+        if (pruning == TermPruning.NONE || query == null)
+            return query;
+        try {
+            IndexSearcher searcher = acquire();
+            try {
+                return pruning.prune(query, searcher.getIndexReader(), maxDfRatio);
+            } finally {
+                release(searcher);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return query;
+        }
+    }
+
+    /*
+     * The original query parser path: escapes the special characters and
+     * parses content plus "categories:word" for every category word.
+     */
+    public Query buildParsedQuery(String content, String categories) {
+        return buildParsedQuery(analyzer, contentField, categoriesField, content, categories);
+    }
+
+    public static Query buildParsedQuery(Analyzer analyzer, String content, String categories) {
+        return buildParsedQuery(analyzer, "content", "categories", content, categories);
+    }
+
+    public static Query buildParsedQuery(Analyzer analyzer, String contentField, String categoriesField,
+                                         String content, String categories) {
         //content = removeSpecialChars(content);
         //categories = removeSpecialChars(categories);
         content = handleSpecialChars(content);
@@ -110,10 +704,13 @@ public class AnswerEngine {
         StringBuilder sb = new StringBuilder()
                 .append(content);
         for (String category : categories.split("\\s+")) {
-            sb.append(" categories:").append(category);
+            sb.append(' ').append(categoriesField).append(':').append(category);
+        }
+        try {
+            return new QueryParser(contentField, analyzer).parse(sb.toString());
+        } catch (ParseException e) {
+            return null;
         }
-        System.out.println(buildQuery(sb.toString())); // debug
-        return buildQuery(sb.toString());
     }
 
     /*
@@ -143,14 +740,143 @@ public class AnswerEngine {
     }
 
     /*
-     * Close the DirectoryReader.
+     * Stops background refreshes and closes the reader once no search uses
+     * it any more.
      */
     public void close() throws IOException {
-        reader.close();
+        Metrics.get().removeGauges(gaugeScope);
+        stopRefresh();
+        searcherManager.close();
+        if (searchExecutor != null)
+            searchExecutor.shutdown();
+        if (queryLog != null)
+            queryLog.close();
+    }
+
+    private static QueryLog openQueryLog(EngineOptions options) {
+        if (options.slowQueryMillis < 0)
+            return null;
+        try {
+            return new QueryLog(options.queryLog, options.slowQueryMillis, options.profileQueries);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    Analyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    DirectQueryBuilder getQueryBuilder() {
+        return queryBuilder;
+    }
+
+    public String getContentField() {
+        return contentField;
+    }
+
+    public String getCategoriesField() {
+        return categoriesField;
+    }
+
+    /*
+     * Loads the stored title of a hit from the current reader, timed as the
+     * "query.titles" stage.
+     */
+    public String getTitle(int doc) throws IOException {
+        IndexSearcher searcher = acquire();
+        try {
+            return getTitle(searcher, doc);
+        } finally {
+            release(searcher);
+        }
+    }
+
+    public String getTitle(IndexSearcher searcher, int doc) throws IOException {
+        long start = System.nanoTime();
+        String title = searcher.doc(doc).get("title");
+        TITLE_TIME.recordSince(start);
+        return title;
+    }
+
+    public CategoryMode getCategoryMode() {
+        return categoryMode;
+    }
+
+    /*
+     * Changes how categories are searched. The mode is part of the result
+     * cache key, so results found in the old mode are not returned.
+     */
+    public void setCategoryMode(CategoryMode categoryMode) {
+        this.categoryMode = categoryMode;
     }
 
-    public DirectoryReader getReader() {
-        return this.reader;
+    public TermPruning getTermPruning() {
+        return termPruning;
+    }
+
+    /*
+     * Changes what is done with common terms.
+     */
+    public void setTermPruning(TermPruning termPruning) {
+        this.termPruning = termPruning;
+    }
+
+    public float getMaxDfRatio() {
+        return maxDfRatio;
+    }
+
+    /*
+     * Changes the share of documents above which a term is common.
+     */
+    public void setMaxDfRatio(float maxDfRatio) {
+        this.maxDfRatio = maxDfRatio;
+    }
+
+    public CascadeSearch getCascade() {
+        return cascade;
+    }
+
+    /*
+     * Searches clues with the cascade in search, or in one pass if null.
+     */
+    public void setCascade(CascadeSearch cascade) {
+        this.cascade = cascade;
+    }
+
+    public CategoryFilterCache getCategoryCache() {
+        return categoryCache;
+    }
+
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /*
+     * Replaces the result cache. Null turns caching off.
+     */
+    public void setResultCache(QueryResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /*
+     * The title to doc id lookup for the current reader, built on first use
+     * and again after a refresh.
+     */
+    public synchronized TitleLookup getTitleLookup() throws IOException {
+        IndexSearcher searcher = acquire();
+        try {
+            IndexReader reader = searcher.getIndexReader();
+            long version = ShardSearcherManager.version(reader);
+            if (titleLookup == null || titleLookupVersion != version) {
+                titleLookup = TitleLookup.build(reader);
+                titleLookupVersion = version;
+            }
+            return titleLookup;
+        } finally {
+            release(searcher);
+        }
     }
 
     /*
@@ -196,7 +922,7 @@ public class AnswerEngine {
             System.out.println("total hits: " + result.totalHits);
             String printLine;
             for (ScoreDoc scoreDoc : result.scoreDocs) {
-                printLine = engine.reader.document(scoreDoc.doc).get("title");
+                printLine = engine.getTitle(scoreDoc.doc);
                 System.out.println(engine.reanalyzeTitle(printLine));
                 System.out.println(printLine.substring(2, printLine.length() - 2));
                 //System.out.println(engine.searcher.explain(q1, scoreDoc.doc));
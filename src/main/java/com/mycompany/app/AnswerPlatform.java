@@ -8,6 +8,10 @@ import org.apache.lucene.search.similarities.Similarity;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.function.Function;
 
 /*
  * Main platform for Indexing and using the Answer Engine.
@@ -21,60 +25,181 @@ public class AnswerPlatform {
 
     public AnswerPlatform(String indexFilePath, String dataFolder, boolean write, boolean stem,
                           boolean lemmatize, boolean stopwords, Similarity s) {
+        this(indexFilePath, dataFolder, write, stem, lemmatize, stopwords, s, 1);
+    }
+
+    /*
+     * indexThreads is only used when writing the index. More than one
+     * thread builds the index with the parallel IndexingPipeline. Writing
+     * an index that already exists only re-indexes the data files that
+     * changed since it was last written (see Indexer.refreshWikiFiles).
+     */
+    public AnswerPlatform(String indexFilePath, String dataFolder, boolean write, boolean stem,
+                          boolean lemmatize, boolean stopwords, Similarity s, int indexThreads) {
+        this(indexFilePath, dataFolder, write, stem, lemmatize, stopwords, s, indexThreads, 1);
+    }
+
+    /*
+     * With more than one shard the index is written as a ShardedIndex, the
+     * shards built in parallel. The engine finds out from the index
+     * directory whether it is sharded.
+     */
+    public AnswerPlatform(String indexFilePath, String dataFolder, boolean write, boolean stem,
+                          boolean lemmatize, boolean stopwords, Similarity s, int indexThreads, int shards) {
+        this(indexFilePath, dataFolder, write, stem, lemmatize, stopwords, s, indexThreads, shards,
+                new IndexerOptions(), new EngineOptions());
+    }
+
+    /*
+     * The indexer options are only used when writing the index.
+     */
+    public AnswerPlatform(String indexFilePath, String dataFolder, boolean write, boolean stem,
+                          boolean lemmatize, boolean stopwords, Similarity s, int indexThreads, int shards,
+                          IndexerOptions indexerOptions, EngineOptions engineOptions) {
+        if (write) { // writing a new index
+            writeIndex(indexFilePath, path -> new Indexer(path, stem, lemmatize, stopwords, s, indexerOptions),
+                    dataFolder, indexThreads, shards);
+        }
+        this.engine = new AnswerEngine(indexFilePath, stem, lemmatize, stopwords, s, engineOptions);
+    }
+
+    /*
+     * Platform over one variant of a multi-variant index. Writing builds
+     * every variant in one pass over the data, so any variant can be used
+     * afterwards without rebuilding.
+     */
+    public AnswerPlatform(String indexFilePath, String dataFolder, boolean write, IndexVariant variant,
+                          Similarity s, int indexThreads) {
+        this(indexFilePath, dataFolder, write, variant, s, indexThreads, 1);
+    }
+
+    public AnswerPlatform(String indexFilePath, String dataFolder, boolean write, IndexVariant variant,
+                          Similarity s, int indexThreads, int shards) {
+        this(indexFilePath, dataFolder, write, variant, s, indexThreads, shards, new IndexerOptions(),
+                new EngineOptions());
+    }
+
+    public AnswerPlatform(String indexFilePath, String dataFolder, boolean write, IndexVariant variant,
+                          Similarity s, int indexThreads, int shards, IndexerOptions indexerOptions,
+                          EngineOptions engineOptions) {
+        if (write) { // writing a new index
+            writeIndex(indexFilePath,
+                    path -> new Indexer(path, EnumSet.allOf(IndexVariant.class), s, indexerOptions),
+                    dataFolder, indexThreads, shards);
+        }
+        this.engine = new AnswerEngine(indexFilePath, variant, s, engineOptions);
+    }
+
+    private static void writeIndex(String indexFilePath, Function<String, Indexer> newIndexer, String dataFolder,
+                                   int indexThreads, int shards) {
         try {
-            if (write) { // writing a new index
-                Indexer indexer = new Indexer(indexFilePath, stem, lemmatize, stopwords, s);
-
-                File dataFolderFile = new File("src/main/resources/" + dataFolder);
-                File[] dataFileList = dataFolderFile.listFiles();
-                assert dataFileList != null;
-                for (File dataFile : dataFileList) {
-                    indexer.addWikiFile(dataFile);
-                }
-                indexer.close();
+            File[] dataFileList = dataFiles(dataFolder);
+            if (shards > 1) {
+                ShardedIndex.build(Paths.get(indexFilePath), Arrays.asList(dataFileList), shards, indexThreads,
+                        newIndexer);
+                return;
             }
-            this.engine = new AnswerEngine(indexFilePath, stem, lemmatize, stopwords, s);
-
+            // shards left in the directory would be searched instead
+            ShardedIndex.deleteShards(Paths.get(indexFilePath), 0);
+            Indexer indexer = newIndexer.apply(indexFilePath);
+            indexer.refreshWikiFiles(Arrays.asList(dataFileList), indexThreads);
+            indexer.close();
         } catch (IOException e) {
             e.printStackTrace();
             System.exit(1);
         }
     }
 
+    /*
+     * The wiki files of the data folder, in the resources folder unless the
+     * path is absolute. The data may also be a single file, such as a .tar.bz2
+     * of the whole folder (see DecompressingChannel).
+     */
+    static File[] dataFiles(String dataFolder) {
+        File data = new File(dataFolder);
+        if (!data.isAbsolute())
+            data = new File("src/main/resources/" + dataFolder);
+        if (data.isFile())
+            return new File[]{data};
+        File[] dataFileList = data.listFiles();
+        assert dataFileList != null;
+        return dataFileList;
+    }
+
     public Query buildQuery(String content, String categories) {
         return engine.buildQuery(content, categories);
     }
 
     public TopDocs searchQuery(String query, int hits) {
-        Query q1 = engine.buildQuery(query);
-        return engine.searchIndex(q1, hits);
+        return engine.search(query, null, hits);
     }
 
     public TopDocs searchQuery(String content, String categories, int hits) {
+        return engine.search(content, categories, hits);
+    }
+
+    public AnswerEngine getEngine() {
+        return engine;
+    }
+
+    public QueryResultCache getResultCache() {
+        return engine.getResultCache();
+    }
+
+    /*
+     * Searches for the top hits and, in the same pass, finds the rank of the
+     * correct result with the given GoldRankCollector.
+     */
+    public TopDocs searchQuery(String content, String categories, int hits, GoldRankCollector rankCollector) {
         Query q1 = engine.buildQuery(content, categories);
-        return engine.searchIndex(q1, hits);
+        return engine.searchIndex(q1, hits, rankCollector);
+    }
+
+    /*
+     * Returns a collector that finds the rank of the expected answer,
+     * limited to maxRank like getRankCorrectResult. The expected answer is
+     * looked up by title, no stored fields are loaded.
+     */
+    public GoldRankCollector newRankCollector(String expecting, int maxRank) {
+        try {
+            return new GoldRankCollector(engine.getTitleLookup().lookup(expecting), maxRank);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+            return null;
+        }
     }
 
     public void printResults(TopDocs result, int num) {
+        System.out.print(formatResults(result, num));
+    }
+
+    /*
+     * Same output as printResults, returned as a string so concurrent
+     * callers can print it in order.
+     */
+    public String formatResults(TopDocs result, int num) {
+        StringBuilder sb = new StringBuilder();
         try {
-            System.out.println("total hits: " + result.totalHits);
+            sb.append("total hits: ").append(result.totalHits).append(System.lineSeparator());
             String printLine;
             int count = 0;
             for (ScoreDoc scoreDoc : result.scoreDocs) {
                 if (count > num) break;
-                printLine = engine.getReader().document(scoreDoc.doc).get("title");
-                System.out.println(printLine.substring(2, printLine.length() - 2));
+                printLine = engine.getTitle(scoreDoc.doc);
+                sb.append(printLine, 2, printLine.length() - 2).append(System.lineSeparator());
                 count++;
             }
         } catch (IOException e) {
             e.printStackTrace();
             System.exit(1);
         }
+        return sb.toString();
     }
 
     public String getFirstResultTitle(ScoreDoc scoreDoc) {
         try {
-            return engine.getReader().document(scoreDoc.doc).get("title");
+            return engine.getTitle(scoreDoc.doc);
         } catch (IOException e) {
             e.printStackTrace();
             return null;
@@ -90,7 +215,7 @@ public class AnswerPlatform {
             String result;
             int rank = 1;
             for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
-                result = engine.getReader().document(scoreDoc.doc).get("title");
+                result = engine.getTitle(scoreDoc.doc);
                 if (matchAnswers(expecting, result)) {
                     return rank;
                 }
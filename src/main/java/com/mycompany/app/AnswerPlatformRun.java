@@ -8,7 +8,13 @@ import org.apache.lucene.search.similarities.Similarity;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /*
  * Testing Jeopardy questions
@@ -19,13 +25,45 @@ public class AnswerPlatformRun {
     public static String INDEX = "PlainIndex"; // in the resources folder
     public static final String DATA = "wiki-subset-20140602"; // in the resources folder
     public static boolean WRITE = false; // do NOT accidentally overwrite the index
+    public static boolean MULTI_VARIANT = false; // use the variant fields of MULTI_INDEX instead of INDEX
+    public static final String MULTI_INDEX = "MultiVariantIndex";
+    public static int INDEX_THREADS = Runtime.getRuntime().availableProcessors(); // only used when writing
     public static boolean STEM = false;
     public static boolean LEMMATIZE = false;
+    public static boolean QUERY_LEMMAS = false; // lemmatize lemma index queries with the LemmaDictionary, see README
+    public static boolean DICTIONARY_LEMMAS = false; // build lemma indices with the LemmaDictionary (only used when writing)
+    public static boolean TOKENIZER_LEMMAS = false; // build lemma indices with the LemmaTokenizer (only used when writing)
     public static boolean STOPWORDS = true; // true if we keep stop words
+    public static boolean RANK_COLLECTOR = true; // rank by GoldRankCollector instead of loading every title (not with a cascade)
+    public static int QUERY_THREADS = 1; // more than 1 runs the clues concurrently
+    public static boolean VIRTUAL_THREADS = false; // needs Java 21, otherwise platform threads
+    public static String METRICS_FILE = null; // e.g. "metrics.json", rewritten every METRICS_PERIOD seconds
+    public static int METRICS_PERIOD = 10;
+    public static DirectoryType DIRECTORY = DirectoryType.FS; // MMAP_PRELOAD pages the whole index in on open
+    public static int WARMUP_CLUES = 0; // clues replayed before the run, from the start of QUERIES
+    public static int WARMUP_TERMS = 0; // top-DF terms of content and categories searched before the run
+    public static int SHARDS = 1; // more than 1 writes a ShardedIndex (only used when writing)
+    public static int SEARCH_THREADS = 1; // threads scoring the segments/shards of one search
+    public static IndexProfile INDEX_PROFILE = IndexProfile.STANDARD; // LEAN drops positions (only used when writing)
+    public static int MERGE_SEGMENTS = 0; // above 0 overrides the profile's force merge (only used when writing)
+    public static CategoryMode CATEGORY_MODE = CategoryMode.SCORED; // FILTER and BOOST use cached category bitsets
+    public static float CATEGORY_BOOST = 1.0F; // added to the score of category matches in BOOST
+    public static TermPruning TERM_PRUNING = TermPruning.NONE; // DROP or COMMON_TERMS for the stopword indices
+    public static float MAX_DF_RATIO = 0.2F; // terms in more of the documents than this are pruned
+    public static boolean PRINT_QUERIES = false; // print every clue query
+    public static long SLOW_QUERY_MILLIS = -1; // log searches at least this slow as JSON lines, 0 all, -1 none
+    public static boolean PROFILE_QUERIES = false; // add the time of each clause to the logged searches
+    public static String QUERY_LOG = null; // e.g. "queries.jsonl", appended; null logs to stderr
+    public static int CASCADE_CANDIDATES = 0; // above 0 searches clues with a CascadeSearch of this many candidates
+    public static int CASCADE_RERANKED = 100; // top candidates reranked by title in the last stage
+    public static long CASCADE_BUDGET_MILLIS = 0; // stages left after this much of a query are skipped, 0 no budget
     public static Similarity SIMILARITY = new LMJelinekMercerSimilarity(0.1F);
     //public static Similarity SIMILARITY = new BM25Similarity();
     //public static Similarity SIMILARITY = new ClassicSimilarity();
 
+    // printResults shows one more than this
+    private static final int PRINTED = 5;
+
     private AnswerPlatform platform;
 
     /*
@@ -33,24 +71,116 @@ public class AnswerPlatformRun {
      *  stemming, no lemmatization, stopwords kept, Jelinek-Mercer language model (lambda = 0.1)
      */
     public static void main(String[] args) {
+        Metrics.get().registerMBean();
+        if (METRICS_FILE != null)
+            Metrics.get().startJsonDump(new File(METRICS_FILE), METRICS_PERIOD);
         AnswerPlatformRun platformRun = new AnswerPlatformRun();
         platformRun.initialize(args);
-        platformRun.test_onAllQueries();
+        platformRun.warmUp();
+        if (QUERY_THREADS > 1 || VIRTUAL_THREADS)
+            platformRun.test_onAllQueriesConcurrent(QUERY_THREADS, VIRTUAL_THREADS);
+        else
+            platformRun.test_onAllQueries();
+        if (platformRun.platform.getResultCache() != null)
+            System.out.println("result cache: " + platformRun.platform.getResultCache());
+        if (CATEGORY_MODE != CategoryMode.SCORED)
+            System.out.println("category cache: " + platformRun.platform.getEngine().getCategoryCache());
+        System.out.println("metrics: " + Metrics.get().getJson());
+        if (METRICS_FILE != null) {
+            Metrics.get().stopJsonDump();
+            Metrics.get().writeJson(new File(METRICS_FILE));
+        }
     }
 
+    /*
+     * Optional sixth and seventh arguments: the number of query threads, and
+     * "virtual" to run each clue on its own virtual thread.
+     */
     public void initialize(String[] args) {
-        if (args.length == 5) {
+        if (args.length >= 5) {
             INDEX = args[0];
+            MULTI_VARIANT = INDEX.equals(MULTI_INDEX);
             STEM = Boolean.parseBoolean(args[1]);
             LEMMATIZE = Boolean.parseBoolean(args[2]);
             STOPWORDS = Boolean.parseBoolean(args[3]);
-            if (args[4].equals("BM25")) {
-                SIMILARITY = new BM25Similarity();
-            } else if (args[4].equals("TFIDF")) {
-                SIMILARITY = new ClassicSimilarity();
+            SIMILARITY = parseSimilarity(args[4], SIMILARITY);
+        }
+        if (args.length >= 6)
+            QUERY_THREADS = Integer.parseInt(args[5]);
+        if (args.length >= 7)
+            VIRTUAL_THREADS = args[6].equals("virtual");
+        long start = System.nanoTime();
+        if (MULTI_VARIANT)
+            platform = new AnswerPlatform(MULTI_INDEX, DATA, WRITE, IndexVariant.of(STEM, LEMMATIZE, STOPWORDS),
+                    SIMILARITY, INDEX_THREADS, SHARDS, indexerOptions(), engineOptions());
+        else
+            platform = new AnswerPlatform(INDEX, DATA, WRITE, STEM, LEMMATIZE, STOPWORDS, SIMILARITY,
+                    INDEX_THREADS, SHARDS, indexerOptions(), engineOptions());
+        System.out.printf("index opened (%s) in %.1f ms%n", DIRECTORY, (System.nanoTime() - start) / 1e6);
+    }
+
+    /*
+     * Warms the index with WARMUP_CLUES clues and WARMUP_TERMS terms, if
+     * any, and prints how long it took.
+     */
+    public void warmUp() {
+        try {
+            if (WARMUP_CLUES > 0) {
+                List<Clue> clues = Clue.readAll(new File("src/main/resources/" + QUERIES));
+                System.out.println("warm-up with clues: "
+                        + IndexWarmer.warmWithClues(platform.getEngine(), clues, WARMUP_CLUES));
             }
+            if (WARMUP_TERMS > 0)
+                System.out.println("warm-up with top terms: "
+                        + IndexWarmer.warmWithTopTerms(platform.getEngine(), WARMUP_TERMS));
+        } catch (IOException e) {
+            e.printStackTrace();
         }
-        platform = new AnswerPlatform(INDEX, DATA, WRITE, STEM, LEMMATIZE, STOPWORDS, SIMILARITY);
+    }
+
+    /*
+     * The indexer settings above.
+     */
+    static IndexerOptions indexerOptions() {
+        IndexerOptions options = new IndexerOptions();
+        options.profile = INDEX_PROFILE;
+        options.mergeSegments = MERGE_SEGMENTS;
+        options.dictionaryLemmas = DICTIONARY_LEMMAS;
+        options.tokenizerLemmas = TOKENIZER_LEMMAS;
+        return options;
+    }
+
+    /*
+     * The engine settings above.
+     */
+    static EngineOptions engineOptions() {
+        EngineOptions options = new EngineOptions();
+        options.directory = DIRECTORY;
+        options.searchThreads = SEARCH_THREADS;
+        options.queryLemmas = QUERY_LEMMAS;
+        options.categoryMode = CATEGORY_MODE;
+        options.categoryBoost = CATEGORY_BOOST;
+        options.termPruning = TERM_PRUNING;
+        options.maxDfRatio = MAX_DF_RATIO;
+        options.printQueries = PRINT_QUERIES;
+        options.slowQueryMillis = SLOW_QUERY_MILLIS;
+        options.profileQueries = PROFILE_QUERIES;
+        options.queryLog = QUERY_LOG;
+        options.cascadeCandidates = CASCADE_CANDIDATES;
+        options.cascadeReranked = CASCADE_RERANKED;
+        options.cascadeBudgetMillis = CASCADE_BUDGET_MILLIS;
+        return options;
+    }
+
+    /*
+     * "BM25" or "TFIDF"; anything else (like "JMLM") keeps the default.
+     */
+    static Similarity parseSimilarity(String name, Similarity defaultSimilarity) {
+        if (name.equals("BM25"))
+            return new BM25Similarity();
+        if (name.equals("TFIDF"))
+            return new ClassicSimilarity();
+        return defaultSimilarity;
     }
 
     public void test_onAllQueries() {
@@ -59,6 +189,8 @@ public class AnswerPlatformRun {
         int queryCount = 0;
         int correctCount = 0;
         double inverseRankSum = 0;
+        long start = System.nanoTime();
+        long firstQueryNanos = 0;
 
         try (Scanner scanner = new Scanner(queryFile)) {
             String categories = "";
@@ -82,12 +214,21 @@ public class AnswerPlatformRun {
                 else if (place == 3) {
                     // skipping the blank line
 
-                    results = platform.searchQuery(content, categories, totalReturned);
+                    long queryStart = System.nanoTime();
+                    if (RANK_COLLECTOR && CASCADE_CANDIDATES == 0) {
+                        GoldRankCollector rankCollector = platform.newRankCollector(answer, totalReturned);
+                        results = platform.searchQuery(content, categories, PRINTED + 1, rankCollector);
+                        rank = rankCollector.getRank();
+                    } else {
+                        results = platform.searchQuery(content, categories, totalReturned);
+                        rank = platform.getRankCorrectResult(results, answer, totalReturned);
+                    }
+                    if (queryCount == 0)
+                        firstQueryNanos = System.nanoTime() - queryStart;
                     System.out.println("Question: " + content);
                     //System.out.println("My results:");
-                    platform.printResults(results, 5);
+                    platform.printResults(results, PRINTED);
                     System.out.println("Answer: " + answer);
-                    rank = platform.getRankCorrectResult(results, answer, totalReturned);
                     if (rank == 1)
                         correctCount++;
                     inverseRankSum += 1 / rank;
@@ -102,10 +243,87 @@ public class AnswerPlatformRun {
             System.out.println("total queries: " + queryCount);
             System.out.println("total correct: " + correctCount);
             System.out.println("MRR: " + inverseRankSum / queryCount);
+            printTiming(queryCount, System.nanoTime() - start);
+            System.out.printf("first query: %.2f ms%n", firstQueryNanos / 1e6);
 
         } catch (FileNotFoundException e) {
             e.printStackTrace();
             return;
         }
     }
+
+    /*
+     * Same evaluation as test_onAllQueries, with the clues spread over an
+     * executor that shares the one IndexSearcher. Ranks are gathered and
+     * summed in input order, so the MRR and correct count are exactly the
+     * same as the serial run.
+     */
+    public void test_onAllQueriesConcurrent(int threads, boolean virtual) {
+        File queryFile = new File("src/main/resources/" + QUERIES);
+        List<Clue> clues;
+        try {
+            clues = Clue.readAll(queryFile);
+        } catch (FileNotFoundException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        int totalReturned = 10000;
+        double[] ranks = new double[clues.size()];
+        String[] outputs = new String[clues.size()];
+
+        long start = System.nanoTime();
+        ExecutorService executor = ThreadPools.newExecutor(threads, virtual);
+        List<Future<?>> futures = new ArrayList<>(clues.size());
+        for (int i = 0; i < clues.size(); i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                Clue clue = clues.get(index);
+                TopDocs results;
+                if (RANK_COLLECTOR && CASCADE_CANDIDATES == 0) {
+                    GoldRankCollector rankCollector = platform.newRankCollector(clue.getAnswer(), totalReturned);
+                    results = platform.searchQuery(clue.getContent(), clue.getCategories(), PRINTED + 1,
+                            rankCollector);
+                    ranks[index] = rankCollector.getRank();
+                } else {
+                    results = platform.searchQuery(clue.getContent(), clue.getCategories(), totalReturned);
+                    ranks[index] = platform.getRankCorrectResult(results, clue.getAnswer(), totalReturned);
+                }
+                outputs[index] = platform.formatResults(results, PRINTED);
+            }));
+        }
+
+        int correctCount = 0;
+        double inverseRankSum = 0;
+        try {
+            for (int i = 0; i < clues.size(); i++) {
+                futures.get(i).get();
+                System.out.println("Question: " + clues.get(i).getContent());
+                System.out.print(outputs[i]);
+                System.out.println("Answer: " + clues.get(i).getAnswer());
+                if (ranks[i] == 1)
+                    correctCount++;
+                inverseRankSum += 1 / ranks[i];
+                System.out.println("Rank correct result: " + ranks[i]);
+                System.out.println();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+            return;
+        } finally {
+            executor.shutdownNow();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println("total queries: " + clues.size());
+        System.out.println("total correct: " + correctCount);
+        System.out.println("MRR: " + inverseRankSum / clues.size());
+        System.out.println("query threads: " + (virtual ? "virtual" : String.valueOf(threads)));
+        printTiming(clues.size(), elapsed);
+    }
+
+    private static void printTiming(int queryCount, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("wall-clock time: %.2f s (%.1f queries/sec)%n", seconds, queryCount / seconds);
+    }
 }
@@ -0,0 +1,335 @@
+package com.mycompany.app;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.Similarity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/*
+ * Keeps an AnswerEngine open and answers clues over HTTP, so the index is
+ * opened and warmed once instead of on every run. Uses the JDK's built-in
+ * HTTP server; requests are handled concurrently, on virtual threads when
+ * the runtime has them.
+ *
+ *   GET|POST /answer?content=...&categories=...&k=10
+ *       one clue, categories optional; 400 if no query can be built from it
+ *   POST /batch?k=10
+ *       one clue per line in the body, "categories<TAB>content", with an
+ *       {"error":...} result for a line no query can be built from
+ *   GET /metrics
+ *       Metrics as JSON
+ *   POST /refresh
+ *       reopens the index now; it is also reopened every REFRESH_SECONDS
+ *
+ * Answers are JSON: {"totalHits":n,"hits":[{"title":"...","score":s},...]},
+ * and /batch returns {"results":[answer, ...]} in the order of the lines.
+ *
+ * There is no authentication, so the server only listens on the loopback
+ * address unless HOST is set, and request bodies are limited to
+ * MAX_BODY_BYTES.
+ */
+public class AnswerServer {
+
+    private static final int DEFAULT_HITS = 10;
+    private static final int MAX_HITS = 1000;
+    private static final int MAX_BODY_BYTES = 1 << 20;
+    private static final String NO_QUERY = "{\"error\":\"no query can be built from the clue\"}";
+
+    public static int REFRESH_SECONDS = 60; // 0 only reopens the index on POST /refresh
+    public static DirectoryType DIRECTORY = DirectoryType.MMAP;
+    public static int WARMUP_TERMS = 200; // top-DF terms searched before the server starts listening
+    public static String HOST = null; // null listens on loopback only, e.g. "0.0.0.0" for every interface
+
+    private final AnswerEngine engine;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public AnswerServer(AnswerEngine engine, int port, int threads, boolean virtual) throws IOException {
+        this(engine, null, port, threads, virtual);
+    }
+
+    /*
+     * Listens on host, or on the loopback address if host is null.
+     */
+    public AnswerServer(AnswerEngine engine, String host, int port, int threads, boolean virtual)
+            throws IOException {
+        this.engine = engine;
+        this.executor = ThreadPools.newExecutor(threads, virtual);
+        InetSocketAddress address = host == null
+                ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port)
+                : new InetSocketAddress(host, port);
+        this.server = HttpServer.create(address, 0);
+        server.createContext("/answer", this::handleAnswer);
+        server.createContext("/batch", this::handleBatch);
+        server.createContext("/metrics", exchange -> send(exchange, 200, Metrics.get().getJson()));
+        server.createContext("/refresh", this::handleRefresh);
+        server.setExecutor(executor);
+    }
+
+    /*
+     * Starts listening and reopens the index every refreshSeconds; 0 only
+     * reopens it on POST /refresh.
+     */
+    public void start(int refreshSeconds) {
+        if (refreshSeconds > 0)
+            engine.startRefresh(refreshSeconds * 1000L);
+        server.start();
+        System.out.println("answer server listening on " + server.getAddress().getHostString() + ":" + getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /*
+     * Stops accepting requests, waits up to a second for the ones in flight
+     * and closes the engine.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            engine.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void handleAnswer(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> params = parseParams(exchange.getRequestURI().getRawQuery());
+            if (exchange.getRequestMethod().equals("POST")) {
+                String body = readBody(exchange);
+                if (body == null) {
+                    sendTooLarge(exchange);
+                    return;
+                }
+                params.putAll(parseParams(body));
+            }
+            String content = params.get("content");
+            if (content == null || content.trim().isEmpty()) {
+                send(exchange, 400, "{\"error\":\"content is required\"}");
+                return;
+            }
+            String answer = answer(content, params.get("categories"), hits(params));
+            if (answer == null)
+                send(exchange, 400, NO_QUERY);
+            else
+                send(exchange, 200, answer);
+        } catch (RuntimeException | IOException e) {
+            sendError(exchange, e);
+        }
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                send(exchange, 405, "{\"error\":\"POST one clue per line\"}");
+                return;
+            }
+            int hits = hits(parseParams(exchange.getRequestURI().getRawQuery()));
+            String body = readBody(exchange);
+            if (body == null) {
+                sendTooLarge(exchange);
+                return;
+            }
+            StringBuilder sb = new StringBuilder("{\"results\":[");
+            boolean first = true;
+            for (String line : body.split("\r?\n")) {
+                if (line.trim().isEmpty())
+                    continue;
+                int tab = line.indexOf('\t');
+                String categories = tab < 0 ? null : line.substring(0, tab);
+                String content = tab < 0 ? line : line.substring(tab + 1);
+                if (!first)
+                    sb.append(',');
+                first = false;
+                String answer = answer(content, categories, hits);
+                sb.append(answer == null ? NO_QUERY : answer);
+            }
+            send(exchange, 200, sb.append("]}").toString());
+        } catch (RuntimeException | IOException e) {
+            sendError(exchange, e);
+        }
+    }
+
+    private void handleRefresh(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                send(exchange, 405, "{\"error\":\"POST to refresh\"}");
+                return;
+            }
+            boolean changed = engine.refresh();
+            send(exchange, 200, "{\"changed\":" + changed + ",\"version\":" + engine.getVersion() + "}");
+        } catch (RuntimeException | IOException e) {
+            sendError(exchange, e);
+        }
+    }
+
+    /*
+     * Answers 500 for a request that failed before its response was sent.
+     * If the response had already started (the client went away while it
+     * was written), the exchange is just closed.
+     */
+    private static void sendError(HttpExchange exchange, Exception e) {
+        e.printStackTrace();
+        try {
+            if (exchange.getResponseCode() == -1)
+                send(exchange, 500, "{\"error\":" + Json.quote(String.valueOf(e)) + "}");
+        } catch (IOException | RuntimeException ignored) {
+            // the client is gone
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void sendTooLarge(HttpExchange exchange) throws IOException {
+        send(exchange, 413, "{\"error\":\"request body over " + MAX_BODY_BYTES + " bytes\"}");
+    }
+
+    /*
+     * Searches and returns the answer as JSON, or null if no query can be
+     * built from the clue (too many words). Content is always searched as
+     * clue words with DirectQueryBuilder, never parsed as a query string, so
+     * missing categories are searched as none. Titles are given without the
+     * [[ ]] they are stored with, and are loaded from the same reader that
+     * was searched, even if the index is refreshed in between.
+     */
+    String answer(String content, String categories, int hits) throws IOException {
+        IndexSearcher searcher = engine.acquire();
+        try {
+            return answer(searcher, content, categories, hits);
+        } finally {
+            engine.release(searcher);
+        }
+    }
+
+    private String answer(IndexSearcher searcher, String content, String categories, int hits)
+            throws IOException {
+        TopDocs result = engine.search(searcher, content, categories == null ? "" : categories, hits);
+        if (result == null)
+            return null;
+        StringBuilder sb = new StringBuilder("{\"totalHits\":");
+        sb.append(result.totalHits).append(",\"hits\":[");
+        for (int i = 0; i < result.scoreDocs.length; i++) {
+            ScoreDoc scoreDoc = result.scoreDocs[i];
+            String title = engine.getTitle(searcher, scoreDoc.doc);
+            if (title.startsWith("[[") && title.endsWith("]]"))
+                title = title.substring(2, title.length() - 2);
+            if (i > 0)
+                sb.append(',');
+            sb.append("{\"title\":");
+            Json.quote(sb, title);
+            sb.append(",\"score\":").append(Json.number(scoreDoc.score)).append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    private static int hits(Map<String, String> params) {
+        String k = params.get("k");
+        if (k == null)
+            return DEFAULT_HITS;
+        try {
+            return Math.max(1, Math.min(MAX_HITS, Integer.parseInt(k.trim())));
+        } catch (NumberFormatException e) {
+            return DEFAULT_HITS;
+        }
+    }
+
+    private static Map<String, String> parseParams(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty())
+            return params;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return params;
+    }
+
+    /*
+     * The request body, or null if it is longer than MAX_BODY_BYTES.
+     */
+    private static String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                if (body.size() + n > MAX_BODY_BYTES)
+                    return null;
+                body.write(buffer, 0, n);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /*
+     * Arguments: <INDEX> <STEM> <LEMMATIZE> <STOPWORDS> <SIMILARITY> [PORT]
+     * [THREADS] [platform]. Same index arguments as AnswerPlatformRun, the
+     * MultiVariantIndex included. Requests run on virtual threads unless
+     * "platform" is given (or the runtime is older than Java 21), otherwise
+     * on THREADS platform threads.
+     */
+    public static void main(String[] args) {
+        if (args.length < 5) {
+            System.out.println("usage: AnswerServer <INDEX> <STEM> <LEMMATIZE> <STOPWORDS> <SIMILARITY> "
+                    + "[PORT] [THREADS] [platform]");
+            System.exit(1);
+        }
+        String index = args[0];
+        boolean stem = Boolean.parseBoolean(args[1]);
+        boolean lemmatize = Boolean.parseBoolean(args[2]);
+        boolean stopwords = Boolean.parseBoolean(args[3]);
+        Similarity similarity = AnswerPlatformRun.parseSimilarity(args[4], AnswerPlatformRun.SIMILARITY);
+        int port = args.length >= 6 ? Integer.parseInt(args[5]) : 8080;
+        int threads = args.length >= 7 ? Integer.parseInt(args[6]) : 2 * Runtime.getRuntime().availableProcessors();
+        boolean virtual = args.length < 8 || !args[7].equals("platform");
+
+        EngineOptions options = new EngineOptions();
+        options.directory = DIRECTORY;
+        long start = System.nanoTime();
+        AnswerEngine engine = index.equals(AnswerPlatformRun.MULTI_INDEX)
+                ? new AnswerEngine(index, IndexVariant.of(stem, lemmatize, stopwords), similarity, options)
+                : new AnswerEngine(index, stem, lemmatize, stopwords, similarity, options);
+        Metrics.get().registerMBean();
+        try {
+            System.out.printf("index %s opened (%s) in %.1f ms%n", index, DIRECTORY, (System.nanoTime() - start) / 1e6);
+            if (WARMUP_TERMS > 0)
+                System.out.println("warm-up: " + IndexWarmer.warmWithTopTerms(engine, WARMUP_TERMS));
+            // only listens once warm, so no request sees the cold index
+            AnswerServer server = new AnswerServer(engine, HOST, port, threads, virtual);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+            server.start(REFRESH_SECONDS);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.mycompany.app;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryRescorer;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/*
+ * Searches a clue in stages instead of one pass over every match:
+ *
+ *   first    the content words only, common terms dropped (TermPruning.DROP
+ *            at the engine's max DF ratio), top candidates hits
+ *   rescore  the candidates scored by the engine's full clue query (content
+ *            and categories, with its Similarity), plus CATEGORY_WEIGHT for
+ *            a candidate with any category word
+ *   titles   the top reranked of those, plus TITLE_WEIGHT times the share
+ *            of their title words that are in the clue. Jeopardy answers
+ *            are rarely named in their clue, so the weight is negative.
+ *
+ * The order of the final ranking is the titles stage for its top reranked,
+ * then the rest of the rescore stage; scores are only comparable within a
+ * stage. If the query has used up budgetMillis before a stage, the stages
+ * left are skipped and the last ranking is returned. An engine gets its
+ * cascade from EngineOptions.
+ *
+ * The title words come from the stored title, analyzed like the content,
+ * since the index has no term vectors.
+ */
+public class CascadeSearch {
+
+    // weights of the cascade of an engine (see EngineOptions)
+    public static final float CATEGORY_WEIGHT = 1.0F;
+    public static final float TITLE_WEIGHT = -1.0F;
+
+    public static final String[] STAGES = {"first", "rescore", "titles"};
+
+    private static final int WARMUP_PASSES = 3; // of the report
+
+    private static final LatencyHistogram[] STAGE_TIME = {
+            Metrics.get().timer("cascade.first"),
+            Metrics.get().timer("cascade.rescore"),
+            Metrics.get().timer("cascade.titles")};
+
+    private static final Comparator<ScoreDoc> BY_SCORE = (a, b) -> a.score != b.score
+            ? Float.compare(b.score, a.score) : Integer.compare(a.doc, b.doc);
+
+    private final int candidates;
+    private final int reranked;
+    private final long budgetMillis;
+    private final float categoryWeight;
+    private final float titleWeight;
+
+    public CascadeSearch(int candidates, int reranked, long budgetMillis, float categoryWeight, float titleWeight) {
+        this.candidates = candidates;
+        this.reranked = reranked;
+        this.budgetMillis = budgetMillis;
+        this.categoryWeight = categoryWeight;
+        this.titleWeight = titleWeight;
+    }
+
+    /*
+     * Runs the stages for a clue on a searcher of the engine.
+     */
+    public Result search(AnswerEngine engine, IndexSearcher searcher, String content, String categories)
+            throws IOException {
+        long start = System.nanoTime();
+        long deadline = budgetMillis > 0 ? start + budgetMillis * 1_000_000 : Long.MAX_VALUE;
+        Result result = new Result(start);
+
+        Query contentQuery = engine.getQueryBuilder().build(content, "");
+        if (contentQuery == null)
+            return result;
+        Query first = TermPruning.DROP.prune(contentQuery, searcher.getIndexReader(), engine.getMaxDfRatio());
+        TopDocs top = searcher.search(first, Math.max(1, candidates));
+        result.totalHits = top.totalHits;
+        result.add(top.scoreDocs);
+        if (System.nanoTime() >= deadline)
+            return result.cutOff();
+
+        ScoreDoc[] rescored = rescore(engine, searcher, top, first, content, categories);
+        result.add(rescored);
+        if (System.nanoTime() >= deadline)
+            return result.cutOff();
+
+        ScoreDoc[] head = Arrays.copyOf(rescored, Math.min(reranked, rescored.length));
+        Set<String> clueWords = words(contentQuery);
+        for (int i = 0; i < head.length; i++) {
+            head[i] = new ScoreDoc(head[i].doc, head[i].score
+                    + titleWeight * titleOverlap(engine, searcher, head[i].doc, clueWords));
+        }
+        Arrays.sort(head, BY_SCORE);
+        ScoreDoc[] ranking = Arrays.copyOf(head, rescored.length);
+        System.arraycopy(rescored, head.length, ranking, head.length, rescored.length - head.length);
+        result.add(ranking);
+        return result;
+    }
+
+    /*
+     * The full query's scores of the hits. When the full query is a plain
+     * sum of SHOULD clauses (CategoryMode.SCORED, no TermPruning) it is the
+     * first stage's score plus the clauses the first stage left out, so only
+     * those are scored; otherwise the whole query is.
+     */
+    private ScoreDoc[] rescore(AnswerEngine engine, IndexSearcher searcher, TopDocs top, Query first,
+                               String content, String categories) throws IOException {
+        Query full = engine.buildQuery(content, categories);
+        if (full == null || top.scoreDocs.length == 0)
+            return top.scoreDocs;
+        Query rest = remainder(full, first);
+        boolean additive = rest != null;
+        ScoreDoc[] hits = new QueryRescorer(additive ? rest : full) {
+            @Override
+            protected float combine(float firstPassScore, boolean secondPassMatches, float secondPassScore) {
+                if (additive)
+                    return secondPassMatches ? firstPassScore + secondPassScore : firstPassScore;
+                return secondPassMatches ? secondPassScore : 0;
+            }
+        }.rescore(searcher, top, top.scoreDocs.length).scoreDocs;
+
+        List<Term> terms = new ArrayList<>(new TreeSet<>(engine.getQueryBuilder().categoryTerms(categories)));
+        if (categoryWeight == 0 || terms.isEmpty())
+            return hits;
+        // by doc id, so each segment's category set is walked forward once
+        ScoreDoc[] byDoc = hits.clone();
+        Arrays.sort(byDoc, Comparator.comparingInt(hit -> hit.doc));
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        DocIdSetIterator categoryDocs = null;
+        int leaf = -1;
+        for (int i = 0; i < byDoc.length; i++) {
+            int hitLeaf = ReaderUtil.subIndex(byDoc[i].doc, leaves);
+            LeafReaderContext context = leaves.get(hitLeaf);
+            if (hitLeaf != leaf) {
+                leaf = hitLeaf;
+                DocIdSet set = engine.getCategoryCache().get(context, terms);
+                categoryDocs = set == null ? null : set.iterator();
+            }
+            int doc = byDoc[i].doc - context.docBase;
+            if (categoryDocs != null && categoryDocs.docID() < doc)
+                categoryDocs.advance(doc);
+            if (categoryDocs != null && categoryDocs.docID() == doc)
+                byDoc[i] = new ScoreDoc(byDoc[i].doc, byDoc[i].score + categoryWeight);
+        }
+        Arrays.sort(byDoc, BY_SCORE);
+        return byDoc;
+    }
+
+    /*
+     * The SHOULD clauses of full that are not in first, or null if full is
+     * not the sum of first and those.
+     */
+    private static Query remainder(Query full, Query first) {
+        if (!(full instanceof BooleanQuery) || !(first instanceof BooleanQuery))
+            return null;
+        BooleanQuery fullQuery = (BooleanQuery) full;
+        BooleanQuery firstQuery = (BooleanQuery) first;
+        if (fullQuery.getMinimumNumberShouldMatch() != 0 || firstQuery.getMinimumNumberShouldMatch() != 0)
+            return null;
+        List<BooleanClause> left = new ArrayList<>(fullQuery.clauses());
+        for (BooleanClause clause : left) {
+            if (clause.getOccur() != BooleanClause.Occur.SHOULD)
+                return null;
+        }
+        for (BooleanClause clause : firstQuery.clauses()) {
+            if (!left.remove(clause))
+                return null;
+        }
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (BooleanClause clause : left) {
+            builder.add(clause);
+        }
+        return builder.build();
+    }
+
+    /*
+     * Share of the words of the doc's title that are also in the clue.
+     */
+    private static float titleOverlap(AnswerEngine engine, IndexSearcher searcher, int doc, Set<String> clueWords)
+            throws IOException {
+        String title = engine.getTitle(searcher, doc);
+        if (title == null || title.length() < 4)
+            return 0;
+        int words = 0;
+        int found = 0;
+        try (TokenStream tokenStream = engine.getAnalyzer().tokenStream(engine.getContentField(),
+                title.substring(2, title.length() - 2))) {
+            CharTermAttribute attr = tokenStream.addAttribute(CharTermAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                words++;
+                if (clueWords.contains(attr.toString()))
+                    found++;
+            }
+            tokenStream.end();
+        }
+        return words == 0 ? 0 : (float) found / words;
+    }
+
+    private static Set<String> words(Query contentQuery) {
+        Set<String> words = new HashSet<>();
+        if (contentQuery instanceof BooleanQuery) {
+            for (BooleanClause clause : ((BooleanQuery) contentQuery).clauses()) {
+                if (clause.getQuery() instanceof TermQuery)
+                    words.add(((TermQuery) clause.getQuery()).getTerm().text());
+            }
+        }
+        return words;
+    }
+
+    public int getCandidates() {
+        return candidates;
+    }
+
+    public int getReranked() {
+        return reranked;
+    }
+
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("candidates: %d, reranked: %d, budget: %d ms, category weight: %.2f, title weight: %.2f",
+                candidates, reranked, budgetMillis, categoryWeight, titleWeight);
+    }
+
+    /*
+     * The ranking after each stage that ran, and how long the query had
+     * taken at the end of it.
+     */
+    public static final class Result {
+        private final long start;
+        private final List<ScoreDoc[]> rankings = new ArrayList<>(STAGES.length);
+        private final long[] nanos = new long[STAGES.length];
+        private long totalHits;
+        private boolean cutOff;
+
+        private Result(long start) {
+            this.start = start;
+        }
+
+        private void add(ScoreDoc[] ranking) {
+            long now = System.nanoTime();
+            int stage = rankings.size();
+            STAGE_TIME[stage].record(now - (stage == 0 ? start : start + nanos[stage - 1]));
+            nanos[stage] = now - start;
+            rankings.add(ranking);
+        }
+
+        private Result cutOff() {
+            cutOff = true;
+            return this;
+        }
+
+        /*
+         * How many stages ran, fewer than STAGES when the query was cut off
+         * by the budget, and none when no content query could be built.
+         */
+        public int getStages() {
+            return rankings.size();
+        }
+
+        public ScoreDoc[] getRanking(int stage) {
+            return rankings.get(stage);
+        }
+
+        /*
+         * Time from the start of the query to the end of the stage.
+         */
+        public long getNanos(int stage) {
+            return nanos[stage];
+        }
+
+        public boolean isCutOff() {
+            return cutOff;
+        }
+
+        /*
+         * The top n of the last ranking, with the total hits of the first
+         * stage.
+         */
+        public TopDocs topDocs(int n) {
+            if (rankings.isEmpty())
+                return new TopDocs(0, new ScoreDoc[0], Float.NaN);
+            ScoreDoc[] last = rankings.get(rankings.size() - 1);
+            ScoreDoc[] top = Arrays.copyOf(last, Math.min(n, last.length));
+            return new TopDocs(totalHits, top, top.length == 0 ? Float.NaN : top[0].score);
+        }
+    }
+
+    /*
+     * Runs questions.txt as one full pass (AnswerPlatformRun's 10,000 hits)
+     * and as a cascade, and prints MRR, P@1 and the latency up to the end of
+     * each stage, for example:
+     *
+     * CascadeSearch JMStemIndex true false true JMLM 1000 100 50
+     *
+     * The last three are the candidates, reranked and budget millis of the
+     * cascade (EngineOptions.cascadeCandidates and so on).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.out.println("usage: CascadeSearch <INDEX> <STEM> <LEMMATIZE> <STOPWORDS> <SIMILARITY> "
+                    + "[CANDIDATES] [RERANKED] [BUDGET_MILLIS]");
+            return;
+        }
+        EngineOptions defaults = new EngineOptions();
+        CascadeSearch cascade = new CascadeSearch(args.length > 5 ? Integer.parseInt(args[5]) : 1000,
+                args.length > 6 ? Integer.parseInt(args[6]) : defaults.cascadeReranked,
+                args.length > 7 ? Long.parseLong(args[7]) : defaults.cascadeBudgetMillis, CATEGORY_WEIGHT,
+                TITLE_WEIGHT);
+        AnswerEngine engine = new AnswerEngine(args[0], Boolean.parseBoolean(args[1]), Boolean.parseBoolean(args[2]),
+                Boolean.parseBoolean(args[3]), AnswerPlatformRun.parseSimilarity(args[4], AnswerPlatformRun.SIMILARITY));
+        engine.setResultCache(null);
+        List<Clue> clues = Clue.readAll(new File("src/main/resources/" + AnswerPlatformRun.QUERIES));
+        TitleLookup titles = engine.getTitleLookup();
+
+        IndexSearcher searcher = engine.acquire();
+        try {
+            for (int pass = 0; pass < WARMUP_PASSES; pass++) {
+                ClueEvaluation.run(engine, clues);
+                for (Clue clue : clues) {
+                    cascade.search(engine, searcher, clue.getContent(), clue.getCategories());
+                }
+            }
+            ClueEvaluation full = ClueEvaluation.run(engine, clues);
+            int[][] ranks = new int[STAGES.length][clues.size()];
+            long[][] latencies = new long[STAGES.length][clues.size()];
+            int cutOff = 0;
+            for (int i = 0; i < clues.size(); i++) {
+                Clue clue = clues.get(i);
+                Result result = cascade.search(engine, searcher, clue.getContent(), clue.getCategories());
+                int[] gold = titles.lookup(clue.getAnswer());
+                for (int stage = 0; stage < STAGES.length; stage++) {
+                    // a stage that was cut off keeps the ranking and time of the last one that ran
+                    int last = Math.min(stage, result.getStages() - 1);
+                    ranks[stage][i] = last < 0 ? ClueEvaluation.MAX_RANK : rankOf(gold, result.getRanking(last));
+                    latencies[stage][i] = last < 0 ? 0 : result.getNanos(last);
+                }
+                if (result.isCutOff())
+                    cutOff++;
+            }
+
+            System.out.println("cascade: " + cascade);
+            System.out.printf("%-8s %6s %s%n", "stage", "k", ClueEvaluation.HEADER);
+            System.out.printf("%-8s %6d %s%n", "full", ClueEvaluation.MAX_RANK, full);
+            for (int stage = 0; stage < STAGES.length; stage++) {
+                System.out.printf("%-8s %6d %s%n", STAGES[stage],
+                        stage == STAGES.length - 1 ? cascade.reranked : cascade.candidates,
+                        ClueEvaluation.of(ranks[stage], latencies[stage]));
+            }
+            System.out.println("cut off by the budget: " + cutOff + " of " + clues.size());
+        } finally {
+            engine.release(searcher);
+        }
+        engine.close();
+    }
+
+    private static int rankOf(int[] gold, ScoreDoc[] ranking) {
+        for (int i = 0; i < ranking.length; i++) {
+            if (Arrays.binarySearch(gold, ranking[i].doc) >= 0)
+                return i + 1;
+        }
+        return ClueEvaluation.MAX_RANK;
+    }
+}
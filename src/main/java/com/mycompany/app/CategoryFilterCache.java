@@ -0,0 +1,260 @@
+package com.mycompany.app;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.util.BitDocIdSet;
+import org.apache.lucene.util.BitSetIterator;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RoaringDocIdSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Bounded LRU cache of the documents of one segment that have any of a
+ * clue's category terms, for CategoryFilterQuery. Keyed on the segment core
+ * and the terms, so a clue category that comes back costs one lookup
+ * instead of reading the postings of every category word again.
+ *
+ * Sets are built over all the documents of the core; deleted documents are
+ * skipped by the searcher. Entries of a segment are dropped when it is
+ * closed, so a refreshed reader only keeps the sets of the segments it
+ * still shares with the old one.
+ *
+ * Sets matching at least 1% of the segment are FixedBitSets, sparser ones
+ * RoaringDocIdSets (the same split as Lucene's LRUQueryCache).
+ */
+public class CategoryFilterCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+
+    // rough per entry cost of the key and map entry, for the size estimate
+    private static final long ENTRY_OVERHEAD = 128;
+
+    private final int maxEntries;
+    private final long maxBytes;
+
+    private final LinkedHashMap<Key, DocIdSet> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<IndexReader.CacheKey> segments = new HashSet<>(); // with a closed listener
+    private long bytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CategoryFilterCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    public CategoryFilterCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /*
+     * The documents of the segment with any of the terms, which must be
+     * sorted and distinct. Built and cached on a miss; segments without a
+     * core cache key are never cached.
+     */
+    public DocIdSet get(LeafReaderContext context, List<Term> terms) throws IOException {
+        IndexReader.CacheHelper helper = context.reader().getCoreCacheHelper();
+        if (helper == null) {
+            misses.incrementAndGet();
+            return build(context.reader(), terms);
+        }
+        Key key = new Key(helper.getKey(), terms);
+        synchronized (this) {
+            DocIdSet set = entries.get(key);
+            if (set != null) {
+                hits.incrementAndGet();
+                return set;
+            }
+        }
+        misses.incrementAndGet();
+        // built outside the lock; two threads missing on the same key both build it
+        DocIdSet set = build(context.reader(), terms);
+        put(key, set, helper);
+        return set;
+    }
+
+    private synchronized void put(Key key, DocIdSet set, IndexReader.CacheHelper helper) {
+        long size = sizeOf(key, set);
+        if (size > maxBytes || maxEntries <= 0)
+            return;
+        if (segments.add(key.segment))
+            helper.addClosedListener(this::evictSegment);
+        DocIdSet old = entries.put(key, set);
+        if (old != null)
+            bytes -= sizeOf(key, old);
+        bytes += size;
+
+        Iterator<Map.Entry<Key, DocIdSet>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries || bytes > maxBytes) {
+            Map.Entry<Key, DocIdSet> entry = eldest.next();
+            bytes -= sizeOf(entry.getKey(), entry.getValue());
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private synchronized void evictSegment(IndexReader.CacheKey segment) {
+        segments.remove(segment);
+        Iterator<Map.Entry<Key, DocIdSet>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, DocIdSet> entry = it.next();
+            if (entry.getKey().segment == segment) {
+                bytes -= sizeOf(entry.getKey(), entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    private static DocIdSet build(LeafReader reader, List<Term> terms) throws IOException {
+        int maxDoc = reader.maxDoc();
+        FixedBitSet bits = new FixedBitSet(maxDoc);
+        for (Term term : terms) {
+            PostingsEnum postings = reader.postings(term, PostingsEnum.NONE);
+            if (postings != null)
+                bits.or(postings);
+        }
+        int cardinality = bits.cardinality();
+        if (cardinality * 100L >= maxDoc)
+            return new BitDocIdSet(bits, cardinality);
+        return new RoaringDocIdSet.Builder(maxDoc).add(new BitSetIterator(bits, cardinality)).build();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    /*
+     * Clears the hit, miss and eviction counts, but not the entries.
+     */
+    public void resetStats() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("entries: %d, bytes: %d, hits: %d, misses: %d, hit rate: %.3f, evictions: %d",
+                size(), getBytes(), getHits(), getMisses(), getHitRate(), getEvictions());
+    }
+
+    /*
+     * Runs questions.txt under every CategoryMode, twice: once with an empty
+     * category cache and once with the cache the first pass left. Prints
+     * MRR, P@1, query latency (building and searching) and the cache hit
+     * rate of each pass, for example:
+     *
+     * CategoryFilterCache JMStemIndex true false true JMLM 1.0
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.out.println("usage: CategoryFilterCache <INDEX> <STEM> <LEMMATIZE> <STOPWORDS> <SIMILARITY> [BOOST]");
+            return;
+        }
+        EngineOptions options = new EngineOptions();
+        if (args.length > 5)
+            options.categoryBoost = Float.parseFloat(args[5]);
+        AnswerEngine engine = new AnswerEngine(args[0], Boolean.parseBoolean(args[1]), Boolean.parseBoolean(args[2]),
+                Boolean.parseBoolean(args[3]), AnswerPlatformRun.parseSimilarity(args[4], AnswerPlatformRun.SIMILARITY),
+                options);
+        engine.setResultCache(null);
+        List<Clue> clues = Clue.readAll(new File("src/main/resources/" + AnswerPlatformRun.QUERIES));
+
+        // a first run of every mode, so the JIT does not favour the later ones
+        for (CategoryMode mode : CategoryMode.values()) {
+            engine.setCategoryMode(mode);
+            ClueEvaluation.run(engine, clues);
+        }
+        System.out.printf("%-8s %-6s %s %9s%n", "mode", "cache", ClueEvaluation.HEADER, "hit rate");
+        for (CategoryMode mode : CategoryMode.values()) {
+            engine.setCategoryMode(mode);
+            engine.getCategoryCache().clear();
+            for (String pass : new String[]{"empty", "full"}) {
+                engine.getCategoryCache().resetStats();
+                ClueEvaluation result = ClueEvaluation.run(engine, clues);
+                System.out.printf("%-8s %-6s %s %9.3f%n", mode, pass, result, engine.getCategoryCache().getHitRate());
+            }
+        }
+        System.out.println("category cache: " + engine.getCategoryCache());
+        engine.close();
+    }
+
+    private static long sizeOf(Key key, DocIdSet set) {
+        return ENTRY_OVERHEAD + key.sizeInBytes() + set.ramBytesUsed();
+    }
+
+    private static final class Key {
+        private final IndexReader.CacheKey segment;
+        private final List<Term> terms;
+        private final int hash;
+
+        Key(IndexReader.CacheKey segment, List<Term> terms) {
+            this.segment = segment;
+            this.terms = terms;
+            this.hash = 31 * segment.hashCode() + terms.hashCode();
+        }
+
+        long sizeInBytes() {
+            long size = 0;
+            for (Term term : terms) {
+                size += 32 + term.bytes().length;
+            }
+            return size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return segment == other.segment && terms.equals(other.terms);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.mycompany.app;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.ConstantScoreScorer;
+import org.apache.lucene.search.ConstantScoreWeight;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+/*
+ * Matches the documents with any of the category terms, with a constant
+ * score, through a CategoryFilterCache. Used by AnswerEngine for the
+ * FILTER and BOOST CategoryModes.
+ */
+public class CategoryFilterQuery extends Query {
+
+    private final CategoryFilterCache cache;
+    private final List<Term> terms;
+
+    public CategoryFilterQuery(CategoryFilterCache cache, Collection<Term> terms) {
+        this.cache = cache;
+        this.terms = new ArrayList<>(new TreeSet<>(terms));
+    }
+
+    public List<Term> getTerms() {
+        return terms;
+    }
+
+    @Override
+    public Weight createWeight(IndexSearcher searcher, boolean needsScores, float boost) {
+        return new ConstantScoreWeight(this, boost) {
+            @Override
+            public Scorer scorer(LeafReaderContext context) throws IOException {
+                DocIdSet set = cache.get(context, terms);
+                DocIdSetIterator iterator = set.iterator();
+                return iterator == null ? null : new ConstantScoreScorer(this, score(), iterator);
+            }
+
+            @Override
+            public boolean isCacheable(LeafReaderContext context) {
+                return false; // already cached
+            }
+        };
+    }
+
+    @Override
+    public String toString(String field) {
+        StringBuilder sb = new StringBuilder("CategoryFilter(");
+        for (int i = 0; i < terms.size(); i++) {
+            if (i > 0)
+                sb.append(' ');
+            sb.append(terms.get(i));
+        }
+        return sb.append(')').toString();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return sameClassAs(other)
+                && cache == ((CategoryFilterQuery) other).cache
+                && terms.equals(((CategoryFilterQuery) other).terms);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * classHash() + terms.hashCode();
+    }
+}
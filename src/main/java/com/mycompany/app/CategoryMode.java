@@ -0,0 +1,19 @@
+package com.mycompany.app;
+
+/*
+ * How AnswerEngine uses the categories of a clue.
+ *
+ *   SCORED  every category word is another SHOULD clause, scored by the
+ *           similarity like the content (the original query)
+ *   FILTER  only documents with a category word that match the content
+ *           are returned, scored by the content alone
+ *   BOOST   documents with a category word get EngineOptions.categoryBoost
+ *           added to their content score
+ *
+ * FILTER and BOOST read the category documents from a CategoryFilterCache,
+ * so a category seen before costs a bitset lookup instead of scoring its
+ * postings. Both change the answers, see CategoryFilterCache.main.
+ */
+public enum CategoryMode {
+    SCORED, FILTER, BOOST
+}
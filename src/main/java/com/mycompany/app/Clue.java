@@ -0,0 +1,69 @@
+package com.mycompany.app;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+/*
+ * A Jeopardy clue with its expected answer. The answer may include '|'
+ * between possible answers, see AnswerPlatform.matchAnswers.
+ */
+public class Clue {
+
+    private final String categories;
+    private final String content;
+    private final String answer;
+
+    public Clue(String categories, String content, String answer) {
+        this.categories = categories;
+        this.content = content;
+        this.answer = answer;
+    }
+
+    public String getCategories() {
+        return categories;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public String getAnswer() {
+        return answer;
+    }
+
+    /*
+     * Reads a clue file. Each clue is four lines: categories, content,
+     * answer and a blank line. A clue missing its blank line at the end of
+     * the file is left out.
+     */
+    public static List<Clue> readAll(File file) throws FileNotFoundException {
+        List<Clue> clues = new ArrayList<>();
+        try (Scanner scanner = new Scanner(file)) {
+            String categories = "";
+            String content = "";
+            String answer = "";
+            int place = 0;
+            String nextLine;
+
+            while (scanner.hasNextLine()) {
+                nextLine = scanner.nextLine();
+                if (place == 0)
+                    categories = nextLine;
+                else if (place == 1)
+                    content = nextLine;
+                else if (place == 2)
+                    answer = nextLine;
+                else if (place == 3) {
+                    // skipping the blank line
+                    clues.add(new Clue(categories, content, answer));
+                    place = -1;
+                }
+                place++;
+            }
+        }
+        return clues;
+    }
+}
@@ -0,0 +1,88 @@
+package com.mycompany.app;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Runs clues through an AnswerEngine as it is configured and measures MRR,
+ * P@1 and the latency of building and searching each query. Used by the
+ * reports that compare engine settings (CategoryFilterCache, TermPruning,
+ * CascadeSearch), and through of by SimilaritySweep, which searches without
+ * an engine.
+ */
+public class ClueEvaluation {
+
+    static final int MAX_RANK = 10000; // same limit as AnswerPlatformRun
+
+    private final double mrr;
+    private final double precisionAt1;
+    private final long[] latencies; // sorted
+
+    private ClueEvaluation(double mrr, double precisionAt1, long[] latencies) {
+        this.mrr = mrr;
+        this.precisionAt1 = precisionAt1;
+        this.latencies = latencies;
+        Arrays.sort(this.latencies);
+    }
+
+    public static ClueEvaluation run(AnswerEngine engine, List<Clue> clues) throws IOException {
+        TitleLookup titles = engine.getTitleLookup();
+        int[] ranks = new int[clues.size()];
+        long[] latencies = new long[clues.size()];
+        for (int i = 0; i < clues.size(); i++) {
+            Clue clue = clues.get(i);
+            GoldRankCollector collector = new GoldRankCollector(titles.lookup(clue.getAnswer()), MAX_RANK);
+            long start = System.nanoTime();
+            engine.searchIndex(engine.buildQuery(clue.getContent(), clue.getCategories()), 1, collector);
+            latencies[i] = System.nanoTime() - start;
+            ranks[i] = collector.getRank();
+        }
+        return of(ranks, latencies);
+    }
+
+    /*
+     * The evaluation of clues already run, from the rank of each answer
+     * (MAX_RANK if not found) and the latency of each clue.
+     */
+    public static ClueEvaluation of(int[] ranks, long[] latencies) {
+        double inverseRankSum = 0;
+        int correct = 0;
+        for (int rank : ranks) {
+            if (rank == 1)
+                correct++;
+            inverseRankSum += 1.0 / rank;
+        }
+        return new ClueEvaluation(inverseRankSum / ranks.length, (double) correct / ranks.length,
+                latencies.clone());
+    }
+
+    public double getMrr() {
+        return mrr;
+    }
+
+    public double getPrecisionAt1() {
+        return precisionAt1;
+    }
+
+    public double getMeanMillis() {
+        return Arrays.stream(latencies).average().orElse(0) / 1e6;
+    }
+
+    public double getPercentileMillis(double percentile) {
+        if (latencies.length == 0)
+            return 0;
+        int i = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+        return latencies[Math.max(0, i)] / 1e6;
+    }
+
+    /*
+     * MRR, P@1, mean ms and p95 ms, in the columns of HEADER.
+     */
+    @Override
+    public String toString() {
+        return String.format("%8.4f %6.2f %10.2f %10.2f", mrr, precisionAt1, getMeanMillis(), getPercentileMillis(95));
+    }
+
+    public static final String HEADER = String.format("%8s %6s %10s %10s", "MRR", "P@1", "mean ms", "p95 ms");
+}
@@ -0,0 +1,227 @@
+package com.mycompany.app;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/*
+ * Reads a compressed wiki file, or an archive of several, with the
+ * decompression running on its own thread a few MB ahead of the reader, so
+ * it overlaps with parsing and analysis.
+ *
+ *   .gz, .bz2                  one compressed wiki file
+ *   .zip                       every file in the archive
+ *   .tar, .tar.gz, .tgz,
+ *   .tar.bz2, .tbz2            every file in the archive
+ *
+ * The archive is read as a sequence of entries (a single compressed file is
+ * one entry). read returns -1 at the end of each entry; nextEntry moves on
+ * to the next one. WikiDumpParser parses every entry as a file of its own.
+ */
+public class DecompressingChannel implements ReadableByteChannel {
+
+    private static final int CHUNK_SIZE = 256 * 1024;
+    private static final int CHUNKS_AHEAD = 16; // 4 MB
+
+    private static final String[] EXTENSIONS = {".gz", ".bz2", ".zip", ".tar", ".tgz", ".tbz2"};
+
+    // a data chunk has bytes; markers have none
+    private static final class Chunk {
+        final byte[] bytes;
+        final int length;
+        final String entry; // name of the entry that starts here, for a marker
+        final Throwable error;
+
+        Chunk(byte[] bytes, int length, String entry, Throwable error) {
+            this.bytes = bytes;
+            this.length = length;
+            this.entry = entry;
+            this.error = error;
+        }
+    }
+
+    private static final Chunk END = new Chunk(null, 0, null, null);
+
+    private final File file;
+    private final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(CHUNKS_AHEAD);
+    private final Thread decompressor;
+
+    private Chunk chunk; // the chunk being read, or the marker ending the current entry
+    private int position;
+    private String entry;
+    private volatile boolean closed;
+
+    private DecompressingChannel(File file) {
+        this.file = file;
+        this.decompressor = new Thread(this::decompress, "decompress-" + file.getName());
+        decompressor.setDaemon(true);
+        decompressor.start();
+    }
+
+    /*
+     * Starts decompressing the file. Call nextEntry before reading.
+     */
+    public static DecompressingChannel open(File file) {
+        return new DecompressingChannel(file);
+    }
+
+    /*
+     * Whether the file is read through a DecompressingChannel, going by its
+     * extension.
+     */
+    public static boolean isCompressed(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        for (String extension : EXTENSIONS) {
+            if (name.endsWith(extension))
+                return true;
+        }
+        return false;
+    }
+
+    /*
+     * Whether the file is an archive of several files, rather than one
+     * compressed file.
+     */
+    public static boolean isArchive(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tgz") || name.endsWith(".tbz2")
+                || name.endsWith(".tar.gz") || name.endsWith(".tar.bz2");
+    }
+
+    /*
+     * Skips what is left of the current entry and moves to the next one.
+     * Returns false when there are no more entries.
+     */
+    public boolean nextEntry() throws IOException {
+        while (true) {
+            Chunk next = peek();
+            if (next == END)
+                return false;
+            chunk = null;
+            if (next.bytes == null) {
+                entry = next.entry;
+                return true;
+            }
+        }
+    }
+
+    /*
+     * Name of the current entry, the file name for .gz and .bz2.
+     */
+    public String getEntry() {
+        return entry;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        Chunk current = peek();
+        if (current.bytes == null)
+            return -1; // end of the entry
+        int n = Math.min(dst.remaining(), current.length - position);
+        dst.put(current.bytes, position, n);
+        position += n;
+        if (position == current.length)
+            chunk = null;
+        return n;
+    }
+
+    /*
+     * The current chunk, taking the next one if it has been read. Markers
+     * stay current until nextEntry.
+     */
+    private Chunk peek() throws IOException {
+        if (closed)
+            throw new ClosedChannelException();
+        if (chunk == null) {
+            try {
+                chunk = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while reading " + file, e);
+            }
+            position = 0;
+        }
+        if (chunk.error != null)
+            throw new IOException("could not decompress " + file, chunk.error);
+        return chunk;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        decompressor.interrupt();
+    }
+
+    private void decompress() {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), CHUNK_SIZE)) {
+            String name = file.getName().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".zip")) {
+                copyEntries(new ZipArchiveInputStream(in));
+            } else if (name.endsWith(".tar")) {
+                copyEntries(new TarArchiveInputStream(in));
+            } else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+                copyEntries(new TarArchiveInputStream(new GzipCompressorInputStream(in, true)));
+            } else if (name.endsWith(".tar.bz2") || name.endsWith(".tbz2")) {
+                copyEntries(new TarArchiveInputStream(new BZip2CompressorInputStream(in, true)));
+            } else if (name.endsWith(".gz")) {
+                copyEntry(file.getName(), new GzipCompressorInputStream(in, true));
+            } else if (name.endsWith(".bz2")) {
+                copyEntry(file.getName(), new BZip2CompressorInputStream(in, true));
+            } else {
+                throw new IOException("not a compressed file: " + file);
+            }
+            chunks.put(END);
+        } catch (InterruptedException e) {
+            // closed
+        } catch (IOException | RuntimeException e) {
+            try {
+                chunks.put(new Chunk(null, 0, null, e));
+            } catch (InterruptedException closed) {
+                // nobody is reading any more
+            }
+        }
+    }
+
+    private void copyEntries(ArchiveInputStream<?> archive) throws IOException, InterruptedException {
+        ArchiveEntry archiveEntry;
+        while ((archiveEntry = archive.getNextEntry()) != null) {
+            if (!archiveEntry.isDirectory() && archive.canReadEntryData(archiveEntry))
+                copyEntry(archiveEntry.getName(), archive);
+        }
+    }
+
+    private void copyEntry(String name, InputStream in) throws IOException, InterruptedException {
+        chunks.put(new Chunk(null, 0, name, null));
+        while (!closed) {
+            byte[] bytes = new byte[CHUNK_SIZE];
+            int length = 0;
+            int n;
+            while (length < CHUNK_SIZE && (n = in.read(bytes, length, CHUNK_SIZE - length)) > 0) {
+                length += n;
+            }
+            if (length == 0)
+                return;
+            chunks.put(new Chunk(bytes, length, null, null));
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.mycompany.app;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.TermToBytesRefAttribute;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Builds the query for a clue straight from the analyzer's TokenStream,
+ * without going through QueryParser (and so without escaping).
+ *
+ * Gives the same query as AnswerEngine.buildParsedQuery: the special
+ * characters removed by handleSpecialChars are dropped, every content token
+ * is a SHOULD TermQuery, and every categories word is a SHOULD TermQuery
+ * (or a nested BooleanQuery of SHOULD TermQuerys if the word analyzes to
+ * several tokens, e.g. "NO.1"). Unlike the query parser, AND/OR/NOT in the
+ * content are plain words, and empty content still gives a categories-only
+ * query.
+ */
+public class DirectQueryBuilder {
+
+    private final Analyzer analyzer;
+    private final String contentField;
+    private final String categoriesField;
+
+    public DirectQueryBuilder(Analyzer analyzer) {
+        this(analyzer, "content", "categories");
+    }
+
+    public DirectQueryBuilder(Analyzer analyzer, String contentField, String categoriesField) {
+        this.analyzer = analyzer;
+        this.contentField = contentField;
+        this.categoriesField = categoriesField;
+    }
+
+    /*
+     * Returns null if the query would have too many clauses, like the query
+     * parser.
+     */
+    public Query build(String content, String categories) {
+        try {
+            BooleanQuery.Builder builder = new BooleanQuery.Builder();
+            addContent(builder, removeSpecialChars(content));
+            addCategories(builder, removeSpecialChars(categories));
+            return builder.build();
+        } catch (BooleanQuery.TooManyClauses e) {
+            return null;
+        }
+    }
+
+    private void addContent(BooleanQuery.Builder builder, String content) {
+        try (TokenStream tokenStream = analyzer.tokenStream(contentField, content)) {
+            TermToBytesRefAttribute termAttr = tokenStream.addAttribute(TermToBytesRefAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                builder.add(termQuery(contentField, termAttr), BooleanClause.Occur.SHOULD);
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            // can't happen with a String input
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+     * The query parser analyzes each "categories:word" on its own. The
+     * tokenizer never joins tokens across whitespace, so the whole line is
+     * analyzed at once and the tokens are grouped back into words by their
+     * offsets.
+     */
+    private void addCategories(BooleanQuery.Builder builder, String categories) {
+        List<Query> word = new ArrayList<>(2);
+        int lastEnd = 0;
+        try (TokenStream tokenStream = analyzer.tokenStream(categoriesField, categories)) {
+            TermToBytesRefAttribute termAttr = tokenStream.addAttribute(TermToBytesRefAttribute.class);
+            OffsetAttribute offsetAttr = tokenStream.addAttribute(OffsetAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                if (!word.isEmpty() && hasWhitespace(categories, lastEnd, offsetAttr.startOffset())) {
+                    addWord(builder, word);
+                    word.clear();
+                }
+                word.add(termQuery(categoriesField, termAttr));
+                lastEnd = offsetAttr.endOffset();
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            // can't happen with a String input
+            throw new IllegalStateException(e);
+        }
+        if (!word.isEmpty())
+            addWord(builder, word);
+    }
+
+    /*
+     * Every token of the categories, for CategoryFilterQuery.
+     */
+    public List<Term> categoryTerms(String categories) {
+        List<Term> terms = new ArrayList<>();
+        try (TokenStream tokenStream = analyzer.tokenStream(categoriesField, removeSpecialChars(categories))) {
+            TermToBytesRefAttribute termAttr = tokenStream.addAttribute(TermToBytesRefAttribute.class);
+            tokenStream.reset();
+            while (tokenStream.incrementToken()) {
+                terms.add(new Term(categoriesField, BytesRef.deepCopyOf(termAttr.getBytesRef())));
+            }
+            tokenStream.end();
+        } catch (IOException e) {
+            // can't happen with a String input
+            throw new IllegalStateException(e);
+        }
+        return terms;
+    }
+
+    private static void addWord(BooleanQuery.Builder builder, List<Query> word) {
+        if (word.size() == 1) {
+            builder.add(word.get(0), BooleanClause.Occur.SHOULD);
+            return;
+        }
+        BooleanQuery.Builder nested = new BooleanQuery.Builder();
+        for (Query q : word) {
+            nested.add(q, BooleanClause.Occur.SHOULD);
+        }
+        builder.add(nested.build(), BooleanClause.Occur.SHOULD);
+    }
+
+    private static TermQuery termQuery(String field, TermToBytesRefAttribute termAttr) {
+        return new TermQuery(new Term(field, BytesRef.deepCopyOf(termAttr.getBytesRef())));
+    }
+
+    private static boolean hasWhitespace(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (Character.isWhitespace(s.charAt(i)))
+                return true;
+        }
+        return false;
+    }
+
+    /*
+     * Single pass version of the removal done by
+     * AnswerEngine.handleSpecialChars. Quotes are kept, since they are not
+     * escaped here.
+     */
+    static String removeSpecialChars(String input) {
+        StringBuilder sb = null;
+        int length = input.length();
+        for (int i = 0; i < length; i++) {
+            char c = input.charAt(i);
+            int skip = 0;
+            switch (c) {
+                case '+': case '-': case '!': case '(': case ')': case '{': case '}': case '[': case ']':
+                case '^': case '~': case '*': case '?': case ':': case '\\': case '/':
+                    skip = 1;
+                    break;
+                case '&': case '|':
+                    if (i + 1 < length && input.charAt(i + 1) == c)
+                        skip = 2;
+                    break;
+                default:
+                    break;
+            }
+            if (skip > 0 && sb == null)
+                sb = new StringBuilder(length).append(input, 0, i);
+            if (skip == 0 && sb != null)
+                sb.append(c);
+            i += Math.max(skip, 1) - 1;
+        }
+        return sb == null ? input : sb.toString();
+    }
+}
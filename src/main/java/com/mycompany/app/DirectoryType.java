@@ -0,0 +1,38 @@
+package com.mycompany.app;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/*
+ * How AnswerEngine opens an index from a path (EngineOptions.directory).
+ *
+ *   FS            whatever FSDirectory.open picks (mmap on 64 bit JVMs)
+ *   MMAP          memory mapped, pages are faulted in by the first queries
+ *   MMAP_PRELOAD  memory mapped and read through once when a file is opened,
+ *                 so the whole index is in the page cache before the first
+ *                 query, at the cost of a slower open
+ *   NIOFS         positional reads through a FileChannel, no mapping
+ */
+public enum DirectoryType {
+    FS, MMAP, MMAP_PRELOAD, NIOFS;
+
+    public Directory open(Path path) throws IOException {
+        switch (this) {
+            case MMAP:
+                return new MMapDirectory(path);
+            case MMAP_PRELOAD:
+                MMapDirectory directory = new MMapDirectory(path);
+                directory.setPreload(true);
+                return directory;
+            case NIOFS:
+                return new NIOFSDirectory(path);
+            default:
+                return FSDirectory.open(path);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.mycompany.app;
+
+/*
+ * Settings of an AnswerEngine, given to its constructor. The engine keeps
+ * a copy, so changing the options afterwards does not change an engine
+ * already made with them. The category mode, term pruning and cascade can
+ * still be changed on the engine itself.
+ */
+public class EngineOptions {
+
+    // how the constructors that take a path open the index
+    public DirectoryType directory = DirectoryType.FS;
+    // scores the segments of a search on this many threads; 1 searches on the calling thread
+    public int searchThreads = 1;
+    // lemmatize the queries of lemma indices with the LemmaDictionary, if there is one;
+    // off until its effect on MRR is measured on the full data, see README
+    public boolean queryLemmas = false;
+    // how categories are searched, and the score added by a category match in BOOST
+    public CategoryMode categoryMode = CategoryMode.SCORED;
+    public float categoryBoost = 1.0F;
+    // what is done with common terms, and the share of documents above which a term is common
+    public TermPruning termPruning = TermPruning.NONE;
+    public float maxDfRatio = 0.2F;
+    // prints every clue query built; the query log records them with timings instead
+    public boolean printQueries = false;
+    // searches of at least slowQueryMillis (0 for all, -1 for none) go to queryLog (null
+    // for stderr), with a per-clause profile if profileQueries
+    public long slowQueryMillis = -1;
+    public boolean profileQueries = false;
+    public String queryLog = null;
+    // above 0 searches clues with a CascadeSearch of this many candidates
+    public int cascadeCandidates = 0;
+    public int cascadeReranked = 100;
+    public long cascadeBudgetMillis = 0; // 0 for no budget
+
+    public EngineOptions copy() {
+        EngineOptions copy = new EngineOptions();
+        copy.directory = directory;
+        copy.searchThreads = searchThreads;
+        copy.queryLemmas = queryLemmas;
+        copy.categoryMode = categoryMode;
+        copy.categoryBoost = categoryBoost;
+        copy.termPruning = termPruning;
+        copy.maxDfRatio = maxDfRatio;
+        copy.printQueries = printQueries;
+        copy.slowQueryMillis = slowQueryMillis;
+        copy.profileQueries = profileQueries;
+        copy.queryLog = queryLog;
+        copy.cascadeCandidates = cascadeCandidates;
+        copy.cascadeReranked = cascadeReranked;
+        copy.cascadeBudgetMillis = cascadeBudgetMillis;
+        return copy;
+    }
+
+    /*
+     * The cascade of an engine with these options, null if cascadeCandidates
+     * is 0.
+     */
+    CascadeSearch newCascade() {
+        if (cascadeCandidates <= 0)
+            return null;
+        return new CascadeSearch(cascadeCandidates, cascadeReranked, cascadeBudgetMillis,
+                CascadeSearch.CATEGORY_WEIGHT, CascadeSearch.TITLE_WEIGHT);
+    }
+}
@@ -0,0 +1,121 @@
+package com.mycompany.app;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Weight;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Finds the rank of the correct answer for a query without a priority
+ * queue, stored field loads or a copy of the hits. scoreGoldDocs first
+ * scores just the gold docs, by advancing a scorer of the query to each of
+ * them. The search then only counts, per gold doc, the hits that TopDocs
+ * would sort before it (higher score, or same score and lower doc id).
+ *
+ * Gives the same rank as AnswerPlatform.getRankCorrectResult over the top
+ * maxRank hits, including returning maxRank when the answer is not found
+ * within them.
+ */
+public class GoldRankCollector extends SimpleCollector {
+
+    private final int[] goldDocs; // sorted
+    private final int maxRank;
+
+    // score of each gold doc, NaN where the query does not match it
+    private final float[] goldScores;
+    // hits sorted before each gold doc
+    private final int[] ahead;
+    private int hits;
+
+    private int docBase;
+    private Scorer scorer;
+
+    public GoldRankCollector(int[] goldDocs, int maxRank) {
+        this.goldDocs = goldDocs;
+        this.maxRank = maxRank;
+        this.goldScores = new float[goldDocs.length];
+        this.ahead = new int[goldDocs.length];
+        Arrays.fill(goldScores, Float.NaN);
+    }
+
+    /*
+     * Scores the gold docs for the query about to be searched on this
+     * searcher. Has to be called before the search.
+     */
+    public void scoreGoldDocs(IndexSearcher searcher, Query query) throws IOException {
+        Arrays.fill(goldScores, Float.NaN);
+        Arrays.fill(ahead, 0);
+        hits = 0;
+        if (goldDocs.length == 0)
+            return;
+        Weight weight = searcher.createWeight(searcher.rewrite(query), true, 1f);
+        List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+        for (int i = 0; i < goldDocs.length; i++) {
+            LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(goldDocs[i], leaves));
+            Scorer goldScorer = weight.scorer(leaf);
+            if (goldScorer == null)
+                continue;
+            int target = goldDocs[i] - leaf.docBase;
+            DocIdSetIterator iterator = goldScorer.iterator();
+            if (iterator.advance(target) == target)
+                goldScores[i] = goldScorer.score();
+        }
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) {
+        this.docBase = context.docBase;
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) {
+        this.scorer = scorer;
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+        hits++;
+        doc += docBase;
+        float score = Float.NaN;
+        for (int i = 0; i < goldDocs.length; i++) {
+            // the gold doc itself is never counted: the search may sum the
+            // clause scores in another order than the gold doc's scorer did
+            if (Float.isNaN(goldScores[i]) || doc == goldDocs[i])
+                continue;
+            if (Float.isNaN(score))
+                score = scorer.score();
+            if (score > goldScores[i] || (score == goldScores[i] && doc < goldDocs[i]))
+                ahead[i]++;
+        }
+    }
+
+    @Override
+    public boolean needsScores() {
+        return true;
+    }
+
+    public int getTotalHits() {
+        return hits;
+    }
+
+    /*
+     * The best rank of any gold doc, or maxRank if none of them is within
+     * the top maxRank hits.
+     */
+    public int getRank() {
+        int best = maxRank;
+        for (int i = 0; i < goldDocs.length; i++) {
+            if (!Float.isNaN(goldScores[i]))
+                best = Math.min(best, ahead[i] + 1);
+        }
+        return best;
+    }
+}
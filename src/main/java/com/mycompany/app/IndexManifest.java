@@ -0,0 +1,141 @@
+package com.mycompany.app;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/*
+ * The wiki files an index was built from, with the length, modification
+ * time and CRC32 of each. Kept in the user data of the index commit, so the
+ * documents and the manifest that describes them are saved together, and
+ * used by Indexer.refreshWikiFiles to re-index only the files that changed.
+ *
+ * One line per file: name, length, last modified and checksum, tab
+ * separated.
+ */
+public class IndexManifest {
+
+    static final String COMMIT_KEY = "wiki-manifest";
+
+    private final Map<String, Entry> entries = new TreeMap<>();
+    private final boolean found;
+
+    public static class Entry {
+        final long length;
+        final long lastModified;
+        final long checksum;
+
+        Entry(long length, long lastModified, long checksum) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+
+        /*
+         * Same content, whatever the modification time.
+         */
+        boolean sameContent(Entry other) {
+            return other != null && length == other.length && checksum == other.checksum;
+        }
+    }
+
+    public IndexManifest() {
+        this.found = false;
+    }
+
+    private IndexManifest(boolean found) {
+        this.found = found;
+    }
+
+    /*
+     * Reads the manifest of the last commit in the directory, or returns an
+     * empty one if there is none (a new index, one written before manifests
+     * were kept, or one last written without a refresh).
+     */
+    public static IndexManifest read(Directory directory) throws IOException {
+        if (!DirectoryReader.indexExists(directory))
+            return new IndexManifest();
+        String data = SegmentInfos.readLatestCommit(directory).getUserData().get(COMMIT_KEY);
+        if (data == null)
+            return new IndexManifest();
+        IndexManifest manifest = new IndexManifest(true);
+        for (String line : data.split("\n")) {
+            if (line.isEmpty())
+                continue;
+            String[] parts = line.split("\t");
+            if (parts.length != 4)
+                throw new IOException("bad manifest line in " + directory + ": " + line);
+            manifest.entries.put(parts[0], new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                    Long.parseLong(parts[3])));
+        }
+        return manifest;
+    }
+
+    /*
+     * The manifest as commit user data, see read.
+     */
+    public String toCommitData() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            sb.append(e.getKey()).append('\t').append(entry.length).append('\t').append(entry.lastModified)
+                    .append('\t').append(entry.checksum).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /*
+     * True if the manifest was read from an index, false if it is new.
+     */
+    public boolean isFound() {
+        return found;
+    }
+
+    public Entry get(String name) {
+        return entries.get(name);
+    }
+
+    public void put(String name, Entry entry) {
+        entries.put(name, entry);
+    }
+
+    public Set<String> names() {
+        return entries.keySet();
+    }
+
+    /*
+     * The entry for the file as it is now. If its length and modification
+     * time match this manifest the recorded checksum is reused, otherwise
+     * the file is read to compute it.
+     */
+    public Entry check(File file) throws IOException {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        Entry known = entries.get(file.getName());
+        if (known != null && known.length == length && known.lastModified == lastModified)
+            return known;
+        return new Entry(length, lastModified, checksum(file));
+    }
+
+    static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                crc.update(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,181 @@
+package com.mycompany.app;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
+import org.apache.lucene.codecs.lucene70.Lucene70Codec;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * How Indexer lays out an index.
+ *
+ *   STANDARD      content and categories as plain TextFields (docs, freqs
+ *                 and positions), stored fields compressed for speed, and
+ *                 as many segments as the merge policy leaves
+ *   LEAN          no positions, which none of the queries use (they are
+ *                 all term queries; see AnswerEngine.buildQuery for the
+ *                 phrase queries of the query parser), and force merged to
+ *                 one segment after a build
+ *   LEAN_COMPACT  LEAN with the stored fields (the titles) compressed for size
+ *
+ * Scores only use freqs and norms, so every profile gives the same answers.
+ * The profile is recorded in the commit, and refreshWikiFiles rebuilds an
+ * index that was written with another one.
+ */
+public enum IndexProfile {
+    STANDARD(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS, Lucene50StoredFieldsFormat.Mode.BEST_SPEED, 0),
+    LEAN(IndexOptions.DOCS_AND_FREQS, Lucene50StoredFieldsFormat.Mode.BEST_SPEED, 1),
+    LEAN_COMPACT(IndexOptions.DOCS_AND_FREQS, Lucene50StoredFieldsFormat.Mode.BEST_COMPRESSION, 1);
+
+    static final String COMMIT_KEY = "profile";
+
+    private final IndexOptions textOptions;
+    private final Lucene50StoredFieldsFormat.Mode storedFieldsMode;
+    private final int segments;
+
+    IndexProfile(IndexOptions textOptions, Lucene50StoredFieldsFormat.Mode storedFieldsMode, int segments) {
+        this.textOptions = textOptions;
+        this.storedFieldsMode = storedFieldsMode;
+        this.segments = segments;
+    }
+
+    /*
+     * The field type of the content and categories fields.
+     */
+    public FieldType textFieldType() {
+        FieldType type = new FieldType(TextField.TYPE_NOT_STORED);
+        type.setIndexOptions(textOptions);
+        type.freeze();
+        return type;
+    }
+
+    public Codec codec() {
+        return new Lucene70Codec(storedFieldsMode);
+    }
+
+    /*
+     * Segments to force merge to after a build, 0 for none.
+     */
+    public int getMergeSegments() {
+        return segments;
+    }
+
+    /*
+     * The profile of the last commit in the directory: null if there is no
+     * index, STANDARD for an index written before profiles.
+     */
+    public static IndexProfile of(Directory directory) throws IOException {
+        if (!DirectoryReader.indexExists(directory))
+            return null;
+        Map<String, String> userData = SegmentInfos.readLatestCommit(directory).getUserData();
+        String name = userData.get(COMMIT_KEY);
+        return name == null ? STANDARD : valueOf(name);
+    }
+
+    /*
+     * Builds the wiki files once with every profile and prints the size on
+     * disk, the segments and the latency and MRR of questions.txt, for
+     * example:
+     *
+     * IndexProfile true false true JMLM wiki-subset-20140602/enwiki-20140602-pages-articles.xml-0005.txt
+     *
+     * Files are in the resources folder. The indexes are written to a
+     * temporary directory and deleted afterwards.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.out.println("usage: IndexProfile <STEM> <LEMMATIZE> <STOPWORDS> <SIMILARITY> <FILE>...");
+            return;
+        }
+        boolean stem = Boolean.parseBoolean(args[0]);
+        boolean lemmatize = Boolean.parseBoolean(args[1]);
+        boolean stopwords = Boolean.parseBoolean(args[2]);
+        Similarity similarity = AnswerPlatformRun.parseSimilarity(args[3], AnswerPlatformRun.SIMILARITY);
+        List<File> files = new ArrayList<>();
+        for (String name : Arrays.copyOfRange(args, 4, args.length)) {
+            files.add(new File("src/main/resources/" + name));
+        }
+        List<Clue> clues = Clue.readAll(new File("src/main/resources/" + AnswerPlatformRun.QUERIES));
+        DirectQueryBuilder queryBuilder = new DirectQueryBuilder(
+                Indexer.buildCustomAnalyzer(stem, lemmatize && LemmaDictionary.forQueries(new EngineOptions()), stopwords));
+
+        Path root = Files.createTempDirectory("index-profiles");
+        List<String> rows = new ArrayList<>();
+        try {
+            for (IndexProfile profile : values()) {
+                Path indexDir = root.resolve(profile.name());
+                IndexerOptions options = new IndexerOptions();
+                options.profile = profile;
+                long start = System.nanoTime();
+                Indexer indexer = new Indexer(indexDir.toString(), stem, lemmatize, stopwords, similarity, options);
+                indexer.refreshWikiFiles(files, AnswerPlatformRun.INDEX_THREADS);
+                indexer.close();
+                double buildSeconds = (System.nanoTime() - start) / 1e9;
+
+                try (Directory directory = FSDirectory.open(indexDir);
+                     DirectoryReader reader = DirectoryReader.open(directory)) {
+                    SimilaritySweep sweep = new SimilaritySweep(reader, queryBuilder, clues);
+                    sweep.evaluate(similarity); // warm-up
+                    ClueEvaluation result = sweep.evaluate(similarity);
+                    rows.add(String.format("%-14s %10.1f %10.1f %10.1f %9d %8.1f %8.4f %9.2f %9.2f", profile,
+                            Indexer.directorySize(directory) / 1e6, extensionSize(directory, "pos") / 1e6,
+                            extensionSize(directory, "fdt") / 1e6, reader.leaves().size(), buildSeconds,
+                            result.getMrr(), result.getMeanMillis(), result.getPercentileMillis(95)));
+                }
+            }
+        } finally {
+            ShardedIndex.deleteRecursively(root.toFile());
+        }
+        System.out.printf("%-14s %10s %10s %10s %9s %8s %8s %9s %9s%n", "profile", "size MB", "pos MB",
+                "stored MB", "segments", "build s", "MRR", "mean ms", "p95 ms");
+        for (String row : rows) {
+            System.out.println(row);
+        }
+    }
+
+    /*
+     * Total length of the files of the last commit with the extension,
+     * including the ones packed into compound files.
+     */
+    private static long extensionSize(Directory directory, String extension) throws IOException {
+        long size = 0;
+        for (SegmentCommitInfo segment : SegmentInfos.readLatestCommit(directory)) {
+            if (!segment.info.getUseCompoundFile()) {
+                size += extensionSize(directory, segment.files(), extension);
+                continue;
+            }
+            try (Directory compound = segment.info.getCodec().compoundFormat()
+                    .getCompoundReader(directory, segment.info, IOContext.READONCE)) {
+                size += extensionSize(compound, Arrays.asList(compound.listAll()), extension);
+            }
+        }
+        return size;
+    }
+
+    private static long extensionSize(Directory directory, Iterable<String> files, String extension)
+            throws IOException {
+        long size = 0;
+        for (String file : files) {
+            if (file.endsWith("." + extension))
+                size += directory.fileLength(file);
+        }
+        return size;
+    }
+}
@@ -0,0 +1,97 @@
+package com.mycompany.app;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * The analysis chains of the separate indices (PlainIndex, StemIndex, ...),
+ * as fields of one multi-variant index. Every variant has its own content
+ * and categories field, e.g. content_stem and categories_stem; the title is
+ * only stored once.
+ *
+ * The similarity is not part of the variant, so JMStemIndex and
+ * TFIDFStemIndex are both STEM with a different similarity at query time.
+ */
+public enum IndexVariant {
+    PLAIN("plain", false, false, true),
+    PLAIN_NOSTOP("plainnostop", false, false, false),
+    STEM("stem", true, false, true),
+    STEM_NOSTOP("stemnostop", true, false, false),
+    LEMMA("lemma", false, true, true),
+    LEMMA_NOSTOP("lemmanostop", false, true, false);
+
+    private final String suffix;
+    private final boolean stem;
+    private final boolean lemmatize;
+    private final boolean stopwords;
+
+    IndexVariant(String suffix, boolean stem, boolean lemmatize, boolean stopwords) {
+        this.suffix = suffix;
+        this.stem = stem;
+        this.lemmatize = lemmatize;
+        this.stopwords = stopwords;
+    }
+
+    /*
+     * The variant for the same parameters as the separate indices. There is
+     * no variant that both stems and lemmatizes.
+     */
+    public static IndexVariant of(boolean stem, boolean lemmatize, boolean stopwords) {
+        for (IndexVariant variant : values()) {
+            if (variant.stem == stem && variant.lemmatize == lemmatize && variant.stopwords == stopwords)
+                return variant;
+        }
+        throw new IllegalArgumentException("no index variant both stems and lemmatizes");
+    }
+
+    public String contentField() {
+        return "content_" + suffix;
+    }
+
+    public String categoriesField() {
+        return "categories_" + suffix;
+    }
+
+    public boolean isStem() {
+        return stem;
+    }
+
+    public boolean isLemmatize() {
+        return lemmatize;
+    }
+
+    public boolean isStopwords() {
+        return stopwords;
+    }
+
+    public Analyzer buildAnalyzer() {
+        return Indexer.buildCustomAnalyzer(stem, stopwords);
+    }
+
+    /*
+     * The analyzer for queries on this variant. The lemma variants hold
+     * CoreNLP lemmas, so their queries are lemmatized with the
+     * LemmaDictionary when there is one and the options ask for it.
+     */
+    public Analyzer buildQueryAnalyzer(EngineOptions options) {
+        return Indexer.buildCustomAnalyzer(stem, lemmatize && LemmaDictionary.forQueries(options), stopwords);
+    }
+
+    /*
+     * One analyzer for the whole multi-variant index, picking the analysis
+     * chain by field.
+     */
+    public static Analyzer buildPerFieldAnalyzer(Set<IndexVariant> variants) {
+        Map<String, Analyzer> fieldAnalyzers = new HashMap<>();
+        for (IndexVariant variant : variants) {
+            Analyzer analyzer = variant.buildAnalyzer();
+            fieldAnalyzers.put(variant.contentField(), analyzer);
+            fieldAnalyzers.put(variant.categoriesField(), analyzer);
+        }
+        return new PerFieldAnalyzerWrapper(Indexer.buildCustomAnalyzer(false, true), fieldAnalyzers);
+    }
+}
@@ -0,0 +1,172 @@
+package com.mycompany.app;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/*
+ * Runs queries against an AnswerEngine before it is used, so the postings,
+ * norms, terms index and stored fields the real queries need are already
+ * paged in. The queries go around the result cache and load the titles of
+ * their top hits, like a real clue does.
+ */
+public class IndexWarmer {
+
+    private static final int HITS = 10;
+    private static final int TERMS_PER_QUERY = 10;
+
+    private IndexWarmer() {
+    }
+
+    /*
+     * What a warm-up did. The first warm-up query is the one that paid for
+     * the cold index, so its latency is the first query latency without a
+     * warm-up.
+     */
+    public static class Report {
+        private final int queries;
+        private final long elapsedNanos;
+        private final long firstQueryNanos;
+
+        Report(int queries, long elapsedNanos, long firstQueryNanos) {
+            this.queries = queries;
+            this.elapsedNanos = elapsedNanos;
+            this.firstQueryNanos = firstQueryNanos;
+        }
+
+        public int getQueries() {
+            return queries;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public long getFirstQueryNanos() {
+            return firstQueryNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d queries in %.1f ms, first (cold) query %.2f ms",
+                    queries, elapsedNanos / 1e6, firstQueryNanos / 1e6);
+        }
+    }
+
+    /*
+     * Replays the first count clues.
+     */
+    public static Report warmWithClues(AnswerEngine engine, List<Clue> clues, int count) throws IOException {
+        List<Query> queries = new ArrayList<>();
+        for (Clue clue : clues.subList(0, Math.min(count, clues.size()))) {
+            Query query = engine.buildQuery(clue.getContent(), clue.getCategories());
+            if (query != null)
+                queries.add(query);
+        }
+        return run(engine, queries);
+    }
+
+    /*
+     * Searches for the count terms with the highest document frequency in
+     * the content field and in the categories field. The terms are put
+     * together into clue-like queries of TERMS_PER_QUERY content and
+     * category terms each, built by the engine, so query building is warmed
+     * up as well.
+     */
+    public static Report warmWithTopTerms(AnswerEngine engine, int count) throws IOException {
+        List<Term> contentTerms;
+        List<Term> categoryTerms;
+        IndexSearcher searcher = engine.acquire();
+        try {
+            IndexReader reader = searcher.getIndexReader();
+            contentTerms = topTerms(reader, engine.getContentField(), count);
+            categoryTerms = topTerms(reader, engine.getCategoriesField(), count);
+        } finally {
+            engine.release(searcher);
+        }
+        List<Query> queries = new ArrayList<>();
+        for (int i = 0; i < Math.max(contentTerms.size(), categoryTerms.size()); i += TERMS_PER_QUERY) {
+            Query query = engine.buildQuery(join(contentTerms, i), join(categoryTerms, i));
+            if (query != null)
+                queries.add(query);
+        }
+        return run(engine, queries);
+    }
+
+    private static String join(List<Term> terms, int from) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < Math.min(from + TERMS_PER_QUERY, terms.size()); i++) {
+            sb.append(terms.get(i).text()).append(' ');
+        }
+        return sb.toString();
+    }
+
+    private static Report run(AnswerEngine engine, List<Query> queries) throws IOException {
+        long start = System.nanoTime();
+        long first = 0;
+        IndexSearcher searcher = engine.acquire();
+        try {
+            for (Query query : queries) {
+                long queryStart = System.nanoTime();
+                TopDocs result = engine.searchIndex(searcher, query, HITS);
+                for (ScoreDoc scoreDoc : result.scoreDocs) {
+                    engine.getTitle(searcher, scoreDoc.doc);
+                }
+                if (first == 0)
+                    first = System.nanoTime() - queryStart;
+            }
+        } finally {
+            engine.release(searcher);
+        }
+        return new Report(queries.size(), System.nanoTime() - start, first);
+    }
+
+    /*
+     * The count terms of the field with the highest document frequency,
+     * highest first.
+     */
+    static List<Term> topTerms(IndexReader reader, String field, int count) throws IOException {
+        Terms terms = MultiFields.getTerms(reader, field);
+        if (terms == null || count <= 0)
+            return new ArrayList<>();
+        PriorityQueue<TermStats> top = new PriorityQueue<>(count, (a, b) -> Integer.compare(a.docFreq, b.docFreq));
+        TermsEnum termsEnum = terms.iterator();
+        BytesRef text;
+        while ((text = termsEnum.next()) != null) {
+            int docFreq = termsEnum.docFreq();
+            if (top.size() < count) {
+                top.add(new TermStats(BytesRef.deepCopyOf(text), docFreq));
+            } else if (docFreq > top.peek().docFreq) {
+                top.poll();
+                top.add(new TermStats(BytesRef.deepCopyOf(text), docFreq));
+            }
+        }
+        List<Term> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            result.add(0, new Term(field, top.poll().text));
+        }
+        return result;
+    }
+
+    private static class TermStats {
+        final BytesRef text;
+        final int docFreq;
+
+        TermStats(BytesRef text, int docFreq) {
+            this.text = text;
+            this.docFreq = docFreq;
+        }
+    }
+}
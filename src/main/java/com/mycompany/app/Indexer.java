@@ -1,17 +1,16 @@
 package com.mycompany.app;
 
-import edu.stanford.nlp.ling.CoreAnnotations;
-import edu.stanford.nlp.ling.CoreLabel;
-import edu.stanford.nlp.pipeline.Annotation;
-import edu.stanford.nlp.pipeline.AnnotationPipeline;
-import edu.stanford.nlp.pipeline.StanfordCoreNLP;
 import edu.stanford.nlp.simple.Sentence;
-import edu.stanford.nlp.util.CoreMap;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.custom.CustomAnalyzer;
 import org.apache.lucene.document.*;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.store.Directory;
@@ -19,8 +18,13 @@ import org.apache.lucene.store.FSDirectory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
 /*
  * A class to build and save the index.
@@ -34,25 +38,108 @@ public class Indexer {
     private IndexWriter indexWriter;
     private IndexWriterConfig config;
     private Directory directory;
+    private IndexProfile previousProfile; // of the index in the directory before this Indexer, null if none
 
     private final boolean stem;
-    private final boolean lemmatize;
+    private final boolean lemmatize; // with CoreNLP before the analyzer
+    private final boolean tokenizerLemmas; // with CoreNLP in the analyzer (LemmaTokenizer)
     private final boolean stopwords;
-
-    private AnnotationPipeline pipeline;
+    private final Set<IndexVariant> variants; // null for a single variant index
+
+    private LemmatizerPool lemmatizer; // see lemmatizer()
+    private Predicate<String> sources = source -> true; // see setSources
+
+    private final IndexerOptions options;
+    private final IndexProfile profile; // of the options
+    // the content and categories fields
+    private final FieldType textType;
+
+    // reused by addWikiFile for every article that is not lemmatized
+    private final Field titleField = new StringField("title", "", Field.Store.YES);
+    private final Field contentField;
+    private final Field categoriesField;
+    private final Field sourceField = new StringField(SOURCE_FIELD, "", Field.Store.NO);
+    private final Document reusedDoc = new Document();
+    private final String gaugeScope = Metrics.get().newScope("index.writer");
+
+    // name of the wiki file each document came from ("archive!entry" in an
+    // archive), so refreshWikiFiles can replace the documents of one file
+    static final String SOURCE_FIELD = "file";
+
+    // articles lemmatized on one borrowed CoreNLP pipeline, one after another
+    static final int LEMMA_BATCH_SIZE = 16;
+
+    private static final LatencyHistogram PARSE_TIME = Metrics.get().timer("index.parse");
+    private static final LatencyHistogram LEMMATIZE_TIME = Metrics.get().timer("index.lemmatize");
+    private static final LatencyHistogram ADD_TIME = Metrics.get().timer("index.add");
+    private static final LatencyHistogram FLUSH_TIME = Metrics.get().timer("index.flush");
+    private static final LongAdder DOCS = Metrics.get().counter("index.docs");
+    private static final LongAdder BYTES = Metrics.get().counter("index.bytes");
 
     /*
      * Pass the name and path of the new index. Path is relative to the
      * working directory.
      */
     public Indexer(String indexDirPath, boolean stem, boolean lemmatize, boolean stopwords, Similarity s) {
+        this(indexDirPath, stem, lemmatize, stopwords, s, new IndexerOptions());
+    }
+
+    public Indexer(String indexDirPath, boolean stem, boolean lemmatize, boolean stopwords, Similarity s,
+                   IndexerOptions options) {
+        this.options = options.copy();
+        this.profile = this.options.profile;
+        this.textType = profile.textFieldType();
+        this.contentField = new Field("content", new StringReader(""), textType);
+        this.categoriesField = new Field("categories", "", textType);
         this.similarity = s;
         this.stem = stem;
-        this.lemmatize = lemmatize;
+        // with IndexerOptions.dictionaryLemmas the analyzer lemmatizes, not CoreNLP;
+        // with IndexerOptions.tokenizerLemmas CoreNLP lemmatizes inside the analyzer
+        boolean dictionaryLemmas = lemmatize && LemmaDictionary.forIndexing(this.options);
+        this.tokenizerLemmas = lemmatize && !dictionaryLemmas && this.options.tokenizerLemmas;
+        this.lemmatize = lemmatize && !dictionaryLemmas && !tokenizerLemmas;
         this.stopwords = stopwords;
+        this.variants = null;
+
+        this.analyzer = buildCustomAnalyzer(this.stem, dictionaryLemmas, tokenizerLemmas, this.stopwords);
+        reusedDoc.add(titleField);
+        reusedDoc.add(contentField);
+        reusedDoc.add(categoriesField);
+        reusedDoc.add(sourceField);
+        openWriter(indexDirPath);
+    }
+
+    /*
+     * Builds one multi-variant index, with a content and categories field
+     * for each of the variants (see IndexVariant). Every file is read, and
+     * lemmatized if needed, only once for all of them.
+     */
+    public Indexer(String indexDirPath, Set<IndexVariant> variants, Similarity s) {
+        this(indexDirPath, variants, s, new IndexerOptions());
+    }
 
-        this.analyzer = buildCustomAnalyzer(this.stem, this.stopwords);
-        StanfordLemmatizer();
+    public Indexer(String indexDirPath, Set<IndexVariant> variants, Similarity s, IndexerOptions options) {
+        this.options = options.copy();
+        this.profile = this.options.profile;
+        this.textType = profile.textFieldType();
+        this.contentField = new Field("content", new StringReader(""), textType);
+        this.categoriesField = new Field("categories", "", textType);
+        this.similarity = s;
+        this.stem = false;
+        this.stopwords = true;
+        this.variants = EnumSet.copyOf(variants);
+        boolean anyLemmas = false;
+        for (IndexVariant variant : variants) {
+            anyLemmas |= variant.isLemmatize();
+        }
+        this.lemmatize = anyLemmas;
+        this.tokenizerLemmas = false;
+
+        this.analyzer = IndexVariant.buildPerFieldAnalyzer(this.variants);
+        openWriter(indexDirPath);
+    }
+
+    private void openWriter(String indexDirPath) {
         this.indexDirPath = indexDirPath;
         try {
             this.directory = FSDirectory.open(Paths.get(indexDirPath));
@@ -63,14 +150,39 @@ public class Indexer {
 
         this.config = new IndexWriterConfig(analyzer);
         this.config.setSimilarity(this.similarity);
+        this.config.setCodec(profile.codec());
         this.config.setRAMBufferSizeMB(128); // default is 16?
+        // refreshWikiFiles merges away every deleted document, so the term
+        // statistics are the same as after a fresh build
+        TieredMergePolicy mergePolicy = new TieredMergePolicy();
+        mergePolicy.setForceMergeDeletesPctAllowed(0);
+        this.config.setMergePolicy(mergePolicy);
 
         try {
-            this.indexWriter = new IndexWriter(directory, config);
+            this.previousProfile = IndexProfile.of(directory);
+            this.indexWriter = new IndexWriter(directory, config) {
+                // full flushes (commit, close, NRT reopen) are serialized by
+                // the writer, so one start time is enough
+                private long flushStart;
+
+                @Override
+                protected void doBeforeFlush() {
+                    flushStart = System.nanoTime();
+                }
+
+                @Override
+                protected void doAfterFlush() {
+                    FLUSH_TIME.recordSince(flushStart);
+                }
+            };
         } catch (IOException e) {
             e.printStackTrace();
             System.exit(1);
         }
+        indexWriter.setLiveCommitData(Collections.singletonMap(IndexProfile.COMMIT_KEY, profile.name()).entrySet());
+        Metrics.get().gauge(gaugeScope + ".ramBytes", indexWriter::ramBytesUsed);
+        Metrics.get().gauge(gaugeScope + ".flushingBytes", indexWriter::getFlushingBytes);
+        Metrics.get().gauge(gaugeScope + ".ramDocs", indexWriter::numRamDocs);
     }
 
     /*
@@ -82,6 +194,7 @@ public class Indexer {
             addWikiFile(filePath);
         }
         try {
+            mergeSegments();
             close();
         } catch (IOException e) {
             e.printStackTrace();
@@ -97,111 +210,277 @@ public class Indexer {
      * Put files in the resources folder.
      */
     public void addWikiFile(File file) {
-        // break down with function mentioned above
-
-        // will have issues is file path includes spaces
-        try (Scanner scanner = new Scanner(file)) {
-            String articleContent;
-            String title = "NO TITLE ASSIGNED";
-            String categories = "";
-
-            String line;
-            StringBuilder sb = new StringBuilder();
-
-            while(scanner.hasNextLine()) {
-                line = scanner.nextLine();
-
-                // if it's a title
-                if (line.length() > 2
-                        && line.charAt(0) == '['
-                        && line.charAt(1) == '['
-                        && !line.startsWith("[[File:")) {
-                    // add the last article as a doc to the index
-                    // fixme: what if there is filler text to start the file?
-                    articleContent = sb.toString();
-
-                    if (lemmatize) {
-                        List<String> articleLemmas = lemmatize(articleContent);
-                        if (articleLemmas != null)
-                            addDoc(title, String.join(" ", articleLemmas), categories);
-                    } else {
-                        addDoc(title, articleContent, categories);
-                    }
-
-                    // start processing the next article
-                    title = line;
-                    sb = new StringBuilder();
-
-                    // if it's a categories line
-                } else if (line.startsWith("CATEGORIES:")) {
-                    if (lemmatize) {
-                        List<String> catLemmas = lemmatize(line);
-                        categories = String.join(" ", catLemmas.subList(1, catLemmas.size()));
-                    } else {
-                        categories = line.substring(11);
-                    }
-
-                    // it's just a content line
-                } else {
-                    sb.append(line);
+        BYTES.add(file.length());
+        try (WikiDumpParser parser = open(file)) {
+            if (lemmatize) {
+                addLemmatizedArticles(parser);
+                return;
+            }
+            if (variants != null) {
+                // the content goes into several fields, so it has to be a String
+                while (next(parser)) {
+                    addDoc(buildDoc(parser.toArticle()));
                 }
+                return;
+            }
+            // one document is reused for every article, the content is
+            // streamed into the index straight from the parser's buffer
+            while (next(parser)) {
+                String categoriesLine = parser.getCategoriesLine();
+                titleField.setStringValue(parser.getTitle());
+                contentField.setReaderValue(parser.getContentReader());
+                categoriesField.setStringValue(categoriesLine.isEmpty() ? "" : categoriesLine.substring(11));
+                sourceField.setStringValue(parser.getSource());
+                addDoc(reusedDoc);
             }
         } catch (IOException e) {
-            // handle FileNotFoundException for File()
+            // handle IOException from opening and reading the file
             // handle IOException from addDoc()
             e.printStackTrace();
         }
     }
 
     /*
-     * Pulled from: https://stackoverflow.com/questions/1578062/lemmatization-java
+     * Lemmatizes batches of articles on the LemmatizerPool workers while the
+     * file is still being read. Documents are still added in file order.
+     */
+    private void addLemmatizedArticles(WikiDumpParser parser) throws IOException {
+        Deque<Future<List<Document>>> pending = new ArrayDeque<>();
+        LemmatizerPool lemmatizer = lemmatizer();
+        int maxPending = 2 * lemmatizer.getSize();
+        List<WikiArticle> batch = new ArrayList<>(LEMMA_BATCH_SIZE);
+        try {
+            while (next(parser)) {
+                batch.add(parser.toArticle());
+                if (batch.size() == LEMMA_BATCH_SIZE) {
+                    List<WikiArticle> submitted = batch;
+                    pending.add(lemmatizer.submit(() -> buildDocs(submitted)));
+                    batch = new ArrayList<>(LEMMA_BATCH_SIZE);
+                }
+                while (pending.size() > maxPending) {
+                    addDocs(pending.poll().get());
+                }
+            }
+            while (!pending.isEmpty()) {
+                addDocs(pending.poll().get());
+            }
+            addDocs(buildDocs(batch));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while lemmatizing", e);
+        } catch (ExecutionException e) {
+            throw new IOException("lemmatization failed", e.getCause());
+        }
+    }
+
+    /*
+     * Only indexes the files, or entries of archives, whose source (see
+     * WikiDumpParser.getSource) the filter accepts. ShardedIndex uses it to
+     * give each shard its own entries of an archive.
      */
-    private void StanfordLemmatizer() {
-        // Create StanfordCoreNLP object properties, with POS tagging
-        // (required for lemmatization), and lemmatization
-        Properties props;
-        props = new Properties();
-        props.put("annotators", "tokenize, ssplit, pos, lemma");
-
-        /*
-         * This is a pipeline that takes in a string and returns various analyzed linguistic forms.
-         * The String is tokenized via a tokenizer (such as PTBTokenizerAnnotator),
-         * and then other sequence model style annotation can be used to add things like lemmas,
-         * POS tags, and named entities. These are returned as a list of CoreLabels.
-         * Other analysis components build and store parse trees, dependency graphs, etc.
-         *
-         * This class is designed to apply multiple Annotators to an Annotation.
-         * The idea is that you first build up the pipeline by adding Annotators,
-         * and then you take the objects you wish to annotate and pass them in and
-         * get in return a fully annotated object.
-         *
-         *  StanfordCoreNLP loads a lot of models, so you probably
-         *  only want to do this once per execution
-         */
-        this.pipeline = new StanfordCoreNLP(props);
+    public void setSources(Predicate<String> sources) {
+        this.sources = sources;
     }
 
     /*
-     * Pulled from: https://stackoverflow.com/questions/1578062/lemmatization-java
+     * Opens the file for parsing with the filter of setSources.
      */
-    public List<String> lemmatize(String documentText)
-    {
-        List<String> lemmas = new LinkedList<String>();
-        // Create an empty Annotation just with the given text
-        Annotation document = new Annotation(documentText);
-        // run all Annotators on this text
-        this.pipeline.annotate(document);
-        // Iterate over all of the sentences found
-        List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);
-        for(CoreMap sentence: sentences) {
-            // Iterate over all tokens in a sentence
-            for (CoreLabel token: sentence.get(CoreAnnotations.TokensAnnotation.class)) {
-                // Retrieve and add the lemma for each word into the
-                // list of lemmas
-                lemmas.add(token.get(CoreAnnotations.LemmaAnnotation.class));
+    WikiDumpParser open(File file) throws IOException {
+        return WikiDumpParser.open(file, sources);
+    }
+
+    /*
+     * parser.next(), timed as the "index.parse" stage.
+     */
+    static boolean next(WikiDumpParser parser) throws IOException {
+        long start = System.nanoTime();
+        boolean more = parser.next();
+        PARSE_TIME.recordSince(start);
+        return more;
+    }
+
+    private void addDocs(List<Document> docs) throws IOException {
+        for (Document doc : docs) {
+            addDoc(doc);
+        }
+    }
+
+    /*
+     * Adds every file to the index. With more than one thread the files are
+     * run through an IndexingPipeline, so parsing, lemmatization and adding
+     * documents overlap.
+     */
+    public void addWikiFiles(List<File> files, int threads) {
+        if (threads <= 1) {
+            for (File file : files) {
+                addWikiFile(file);
+            }
+            return;
+        }
+        try {
+            new IndexingPipeline(this, threads).run(files);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+     * Brings the index up to date with the files. The checksums in the
+     * index's IndexManifest tell which files are new or changed; the
+     * documents of changed and removed files are deleted by their source
+     * file, the new and changed files are added again (through the
+     * IndexingPipeline with more than one thread), and the deleted documents
+     * are merged away. An index without a manifest, or written with another
+     * IndexProfile, is rebuilt from scratch. Finally the index is force
+     * merged if the profile asks for it.
+     *
+     * An archive counts as one file: when any entry in it changes, the
+     * documents of all its entries are deleted and the archive is indexed
+     * again.
+     *
+     * Gives the same scores as a fresh build; hits with equal scores may come
+     * in a different order since the document ids differ.
+     */
+    public void refreshWikiFiles(List<File> files, int threads) throws IOException {
+        long start = System.nanoTime();
+        IndexManifest previous = IndexManifest.read(directory);
+        if (previousProfile != null && previousProfile != profile)
+            previous = new IndexManifest(); // every file counts as new
+        IndexManifest manifest = new IndexManifest();
+        List<File> changed = new ArrayList<>();
+        List<Query> stale = new ArrayList<>();
+        for (File file : files) {
+            IndexManifest.Entry entry = previous.check(file);
+            manifest.put(file.getName(), entry);
+            IndexManifest.Entry old = previous.get(file.getName());
+            if (!entry.sameContent(old)) {
+                changed.add(file);
+                if (old != null)
+                    addStale(stale, file.getName());
             }
         }
-        return lemmas;
+        int removed = 0;
+        for (String name : previous.names()) {
+            if (manifest.get(name) == null) {
+                addStale(stale, name);
+                removed++;
+            }
+        }
+
+        // deletes come before the new documents, so they only hit old ones
+        if (!previous.isFound())
+            indexWriter.deleteAll();
+        else if (!stale.isEmpty())
+            indexWriter.deleteDocuments(stale.toArray(new Query[0]));
+        addWikiFiles(changed, threads);
+        indexWriter.forceMergeDeletes();
+        mergeSegments();
+        // the manifest is saved in the same commit as the documents it lists
+        Map<String, String> commitData = new HashMap<>();
+        commitData.put(IndexProfile.COMMIT_KEY, profile.name());
+        commitData.put(IndexManifest.COMMIT_KEY, manifest.toCommitData());
+        indexWriter.setLiveCommitData(commitData.entrySet());
+        indexWriter.commit();
+        previousProfile = profile;
+        System.out.printf("refreshed %s: %d of %d files re-indexed, %d removed, in %.1f s%n", indexDirPath,
+                changed.size(), files.size(), removed, (System.nanoTime() - start) / 1e9);
+    }
+
+    /*
+     * Queries for the documents of a file: its own name as the source, and
+     * "name!entry" for the entries of an archive.
+     */
+    private static void addStale(List<Query> stale, String name) {
+        stale.add(new TermQuery(new Term(SOURCE_FIELD, name)));
+        stale.add(new PrefixQuery(new Term(SOURCE_FIELD, name + "!")));
+    }
+
+    /*
+     * Force merges to the segment count of the options (see
+     * IndexerOptions.getMergeSegments), if there is one. A single
+     * segment is not rewritten again.
+     */
+    private void mergeSegments() throws IOException {
+        int segments = options.getMergeSegments();
+        if (segments <= 0)
+            return;
+        long start = System.nanoTime();
+        indexWriter.forceMerge(segments);
+        System.out.printf("merged %s to %d segment(s) in %.1f s%n", indexDirPath, segments,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    /*
+     * Turns an article into the document that goes into the index,
+     * lemmatizing the content and categories if needed. Returns null if the
+     * article should be skipped.
+     */
+    Document buildDoc(WikiArticle article) {
+        if (lemmatize) {
+            List<Document> docs = buildDocs(Collections.singletonList(article));
+            return docs.isEmpty() ? null : docs.get(0);
+        }
+        String categoriesLine = article.getCategoriesLine();
+        String categories = categoriesLine.isEmpty() ? "" : categoriesLine.substring(11);
+        return buildDoc(article.getTitle(), article.getContent(), categories, null, null, article.getSource());
+    }
+
+    /*
+     * Turns a batch of articles into documents. When lemmatizing, the content
+     * and categories lines of the whole batch are lemmatized with one pipeline
+     * from the pool, but still annotated one text at a time (see
+     * LemmatizerPool.lemmatizeAll).
+     */
+    List<Document> buildDocs(List<WikiArticle> articles) {
+        List<Document> docs = new ArrayList<>(articles.size());
+        if (!lemmatize) {
+            for (WikiArticle article : articles) {
+                Document doc = buildDoc(article);
+                if (doc != null)
+                    docs.add(doc);
+            }
+            return docs;
+        }
+
+        List<String> texts = new ArrayList<>(2 * articles.size());
+        for (WikiArticle article : articles) {
+            texts.add(article.getContent());
+            if (!article.getCategoriesLine().isEmpty())
+                texts.add(article.getCategoriesLine());
+        }
+        long start = System.nanoTime();
+        Iterator<List<String>> lemmas = lemmatizer().lemmatizeAll(texts).iterator();
+        LEMMATIZE_TIME.recordSince(start);
+        for (WikiArticle article : articles) {
+            List<String> articleLemmas = lemmas.next();
+            String categoriesLine = article.getCategoriesLine();
+            String categories = "";
+            String lemmaCategories = "";
+            if (!categoriesLine.isEmpty()) {
+                List<String> catLemmas = lemmas.next();
+                categories = categoriesLine.substring(11);
+                lemmaCategories = String.join(" ", catLemmas.subList(1, catLemmas.size()));
+            }
+            if (articleLemmas != null)
+                docs.add(buildDoc(article.getTitle(), article.getContent(), categories,
+                        String.join(" ", articleLemmas), lemmaCategories, article.getSource()));
+        }
+        return docs;
+    }
+
+    /*
+     * The CoreNLP lemmatization pipelines, one per core at most (see
+     * LemmatizerPool). Set up on first use, so an Indexer that does not
+     * lemmatize with CoreNLP never loads the models.
+     */
+    private synchronized LemmatizerPool lemmatizer() {
+        if (lemmatizer == null)
+            lemmatizer = new LemmatizerPool(Runtime.getRuntime().availableProcessors());
+        return lemmatizer;
+    }
+
+    public List<String> lemmatize(String documentText) {
+        return lemmatizer().lemmatize(documentText);
     }
 
     public void addWikiFile(String filePath) {
@@ -235,16 +514,74 @@ public class Indexer {
         return true;
     }
 
-    private void addDoc(String title, String content, String categories) throws IOException {
+    /*
+     * The lemma content and categories are only used by lemmatized indices
+     * and variants, and may be null otherwise.
+     */
+    private Document buildDoc(String title, String content, String categories,
+                              String lemmaContent, String lemmaCategories, String source) {
         Document doc = new Document();
         doc.add(new StringField("title", title, Field.Store.YES));
-        doc.add(new TextField("content", content, Field.Store.NO));
-        doc.add(new TextField("categories", categories, Field.Store.NO));
+        doc.add(new StringField(SOURCE_FIELD, source, Field.Store.NO));
+        if (variants == null) {
+            doc.add(new Field("content", lemmatize ? lemmaContent : content, textType));
+            doc.add(new Field("categories", lemmatize ? lemmaCategories : categories, textType));
+            return doc;
+        }
+        for (IndexVariant variant : variants) {
+            boolean lemmas = variant.isLemmatize();
+            doc.add(new Field(variant.contentField(), lemmas ? lemmaContent : content, textType));
+            doc.add(new Field(variant.categoriesField(), lemmas ? lemmaCategories : categories, textType));
+        }
+        return doc;
+    }
+
+    /*
+     * IndexWriter is thread-safe, so documents may be added from several
+     * threads at once.
+     */
+    void addDoc(Document doc) throws IOException {
+        long start = System.nanoTime();
         indexWriter.addDocument(doc);
+        ADD_TIME.recordSince(start);
+        DOCS.increment();
     }
 
     public void close() throws IOException {
+        Metrics.get().removeGauges(gaugeScope);
         indexWriter.close();
+        synchronized (this) {
+            if (lemmatizer != null)
+                lemmatizer.close();
+        }
+    }
+
+    /*
+     * Total length of the files in the directory, or -1 if it can not be
+     * read (for example after it has been closed).
+     */
+    static long directorySize(Directory directory) {
+        try {
+            long size = 0;
+            for (String file : directory.listAll()) {
+                size += directory.fileLength(file);
+            }
+            return size;
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    public boolean isLemmatize() {
+        return lemmatize;
+    }
+
+    /*
+     * True if the analyzer lemmatizes with CoreNLP, so the documents are
+     * lemmatized while they are added.
+     */
+    boolean isTokenizerLemmas() {
+        return tokenizerLemmas;
     }
 
     public String getIndexDirPath() {
@@ -255,6 +592,13 @@ public class Indexer {
         return directory;
     }
 
+    /*
+     * The live writer, for a near-real-time AnswerEngine.
+     */
+    public IndexWriter getIndexWriter() {
+        return indexWriter;
+    }
+
     public Similarity getSimilarity() {
         return similarity;
     }
@@ -264,12 +608,34 @@ public class Indexer {
      * stop words. Sets lowercase.
      */
     public static Analyzer buildCustomAnalyzer(boolean stem, boolean stopwords) {
+        return buildCustomAnalyzer(stem, false, stopwords);
+    }
+
+    /*
+     * Same as above, lemmatizing with the LemmaDictionary after lowercasing
+     * if lemmas is true.
+     */
+    public static Analyzer buildCustomAnalyzer(boolean stem, boolean lemmas, boolean stopwords) {
+        return buildCustomAnalyzer(stem, lemmas, false, stopwords);
+    }
+
+    /*
+     * Same as above, tokenizing and lemmatizing with CoreNLP (LemmaTokenizer)
+     * instead of the standard tokenizer if coreNlpLemmas is true.
+     */
+    public static Analyzer buildCustomAnalyzer(boolean stem, boolean lemmas, boolean coreNlpLemmas,
+                                               boolean stopwords) {
         CustomAnalyzer.Builder a = null;
         try {
-            a = CustomAnalyzer.builder()
-                    .withTokenizer("standard") // combines LetterTokenizer and lowercase filter
-                    //.addTokenFilter(RemoveSpecialFilterFactory.class, new HashMap<>())
-                    .addTokenFilter("lowercase");
+            a = CustomAnalyzer.builder();
+            if (coreNlpLemmas)
+                a.withTokenizer(LemmaTokenizerFactory.class);
+            else
+                a.withTokenizer("standard"); // combines LetterTokenizer and lowercase filter
+            //a.addTokenFilter(RemoveSpecialFilterFactory.class, new HashMap<>())
+            a.addTokenFilter("lowercase");
+            if (lemmas)
+                a.addTokenFilter(LemmaFilterFactory.class, "dictionary", LemmaDictionary.RESOURCE);
             if (!stopwords)
                 a.addTokenFilter("stop");
             if (stem)
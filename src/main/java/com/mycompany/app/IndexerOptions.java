@@ -0,0 +1,33 @@
+package com.mycompany.app;
+
+/*
+ * Settings of an Indexer, given to its constructor. The indexer keeps a
+ * copy, so changing the options afterwards does not change it.
+ */
+public class IndexerOptions {
+
+    // how the index is laid out
+    public IndexProfile profile = IndexProfile.STANDARD;
+    // force merge to this many segments after a build instead of the profile's count, if above 0
+    public int mergeSegments = 0;
+    // build lemma indices with the LemmaDictionary, if there is one, instead of CoreNLP
+    public boolean dictionaryLemmas = false;
+    // build lemma indices with the LemmaTokenizer instead of joining CoreNLP lemmas
+    public boolean tokenizerLemmas = false;
+
+    public IndexerOptions copy() {
+        IndexerOptions copy = new IndexerOptions();
+        copy.profile = profile;
+        copy.mergeSegments = mergeSegments;
+        copy.dictionaryLemmas = dictionaryLemmas;
+        copy.tokenizerLemmas = tokenizerLemmas;
+        return copy;
+    }
+
+    /*
+     * Segments to force merge to after a build, 0 for none.
+     */
+    int getMergeSegments() {
+        return mergeSegments > 0 ? mergeSegments : profile.getMergeSegments();
+    }
+}
@@ -0,0 +1,204 @@
+package com.mycompany.app;
+
+import org.apache.lucene.document.Document;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Builds an index with several threads. Work is split into three stages
+ * with a bounded queue between each of them:
+ *
+ *   parse:   read wiki files into articles (one file per thread at a time)
+ *   prepare: lemmatize if needed and build the lucene Document
+ *   add:     add the Document to the shared IndexWriter
+ *
+ * The prepare stage is the expensive one, so it gets most of the threads.
+ * When lemmatizing, each prepare thread takes a batch of articles at a time
+ * and lemmatizes it with a pipeline from the Indexer's LemmatizerPool. The
+ * statistics of the resulting index are the same as a sequential build;
+ * only the order of the documents (and so the doc ids) changes.
+ */
+public class IndexingPipeline {
+
+    private static final int QUEUE_CAPACITY = 256;
+
+    // marks the end of the input for one consumer
+    private static final WikiArticle END_OF_ARTICLES = new WikiArticle("", "", "");
+    private static final Document END_OF_DOCS = new Document();
+
+    private final Indexer indexer;
+    private final int parseThreads;
+    private final int prepareThreads;
+    private final int addThreads;
+
+    private final BlockingQueue<WikiArticle> articles = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final BlockingQueue<Document> docs = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong docCount = new AtomicLong();
+
+    /*
+     * Splits the threads between the stages. There is always at least one
+     * thread per stage. When the analyzer lemmatizes (LemmaTokenizer), the
+     * add stage is the expensive one instead.
+     */
+    public IndexingPipeline(Indexer indexer, int threads) {
+        this.indexer = indexer;
+        this.parseThreads = Math.max(1, threads / 4);
+        if (indexer.isTokenizerLemmas()) {
+            this.prepareThreads = 1;
+            this.addThreads = Math.max(1, threads - parseThreads - prepareThreads);
+        } else {
+            this.addThreads = Math.max(1, threads / 4);
+            this.prepareThreads = Math.max(1, threads - parseThreads - addThreads);
+        }
+    }
+
+    /*
+     * Adds all files to the index, blocking until every document has been
+     * handed to the IndexWriter. Prints the throughput when done.
+     */
+    public void run(List<File> files) throws IOException {
+        ConcurrentLinkedQueue<File> pending = new ConcurrentLinkedQueue<>(files);
+        int parsers = Math.min(parseThreads, Math.max(1, files.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(parsers + prepareThreads + addThreads);
+        String gaugeScope = Metrics.get().newScope("index.queue");
+        Metrics.get().gauge(gaugeScope + ".articles", articles::size);
+        Metrics.get().gauge(gaugeScope + ".docs", docs::size);
+        long start = System.nanoTime();
+        try {
+            Future<?>[] parseStage = new Future<?>[parsers];
+            Future<?>[] prepareStage = new Future<?>[prepareThreads];
+            Future<?>[] addStage = new Future<?>[addThreads];
+            for (int i = 0; i < parsers; i++)
+                parseStage[i] = submit(executor, () -> parse(pending));
+            for (int i = 0; i < prepareThreads; i++)
+                prepareStage[i] = submit(executor, this::prepare);
+            for (int i = 0; i < addThreads; i++)
+                addStage[i] = submit(executor, this::add);
+
+            awaitStage(parseStage);
+            for (int i = 0; i < prepareThreads; i++)
+                putEnd(articles, END_OF_ARTICLES, executor);
+            awaitStage(prepareStage);
+            for (int i = 0; i < addThreads; i++)
+                putEnd(docs, END_OF_DOCS, executor);
+            awaitStage(addStage);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("indexing interrupted", e);
+        } finally {
+            // unblocks any stage still waiting on a queue after a failure
+            executor.shutdownNow();
+            Metrics.get().removeGauges(gaugeScope);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("indexed %d docs in %.1f s (%.1f docs/sec) with %d/%d/%d parse/prepare/add threads%n",
+                docCount.get(), seconds, docCount.get() / seconds, parsers, prepareThreads, addThreads);
+    }
+
+    public long getDocCount() {
+        return docCount.get();
+    }
+
+    private Void parse(ConcurrentLinkedQueue<File> pending) throws IOException, InterruptedException {
+        File file;
+        while ((file = pending.poll()) != null) {
+            Metrics.get().counter("index.bytes").add(file.length());
+            try (WikiDumpParser parser = indexer.open(file)) {
+                while (Indexer.next(parser)) {
+                    articles.put(parser.toArticle());
+                }
+            }
+        }
+        return null;
+    }
+
+    private Void prepare() throws InterruptedException {
+        List<WikiArticle> batch = new ArrayList<>(Indexer.LEMMA_BATCH_SIZE);
+        boolean done = false;
+        while (!done) {
+            batch.add(articles.take());
+            if (indexer.isLemmatize())
+                articles.drainTo(batch, Indexer.LEMMA_BATCH_SIZE - 1);
+            // end markers come after every article, but a batch may have
+            // drained the ones meant for other threads too
+            int ends = 0;
+            while (!batch.isEmpty() && batch.get(batch.size() - 1) == END_OF_ARTICLES) {
+                batch.remove(batch.size() - 1);
+                ends++;
+            }
+            if (ends > 0) {
+                for (int i = 1; i < ends; i++)
+                    articles.put(END_OF_ARTICLES);
+                done = true;
+            }
+            for (Document doc : indexer.buildDocs(batch)) {
+                docs.put(doc);
+            }
+            batch.clear();
+        }
+        return null;
+    }
+
+    private Void add() throws IOException, InterruptedException {
+        Document doc;
+        while ((doc = docs.take()) != END_OF_DOCS) {
+            indexer.addDoc(doc);
+            docCount.incrementAndGet();
+        }
+        return null;
+    }
+
+    /*
+     * Runs a stage thread. If it fails, every other thread is interrupted so
+     * none of them stays blocked on a queue nobody reads or writes anymore.
+     */
+    private static Future<?> submit(ExecutorService executor, Callable<Void> stage) {
+        return executor.submit(() -> {
+            try {
+                return stage.call();
+            } catch (Exception e) {
+                executor.shutdownNow();
+                throw e;
+            }
+        });
+    }
+
+    /*
+     * Hands the end marker to a stage, giving up if the pipeline has been
+     * shut down by a failure.
+     */
+    private static <T> void putEnd(BlockingQueue<T> queue, T end, ExecutorService executor)
+            throws InterruptedException {
+        while (!queue.offer(end, 100, TimeUnit.MILLISECONDS)) {
+            if (executor.isShutdown())
+                return;
+        }
+    }
+
+    /*
+     * Waits for every thread of a stage, rethrowing the first failure.
+     */
+    private static void awaitStage(Future<?>[] stage) throws IOException, InterruptedException {
+        for (Future<?> future : stage) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IOException("indexing stage failed", e.getCause());
+            }
+        }
+    }
+}
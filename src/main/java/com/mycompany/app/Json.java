@@ -0,0 +1,59 @@
+package com.mycompany.app;
+
+/*
+ * Just enough JSON writing for the metrics dump and the answer server, so
+ * no JSON library is needed.
+ */
+public class Json {
+
+    private Json() {
+    }
+
+    /*
+     * Returns the string as a quoted JSON string.
+     */
+    public static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2);
+        quote(sb, s);
+        return sb.toString();
+    }
+
+    public static StringBuilder quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int) c));
+                    else
+                        sb.append(c);
+            }
+        }
+        return sb.append('"');
+    }
+
+    /*
+     * A JSON number; NaN and infinity are not valid JSON, so they become 0.
+     */
+    public static String number(double d) {
+        if (Double.isNaN(d) || Double.isInfinite(d))
+            return "0";
+        return String.format(java.util.Locale.ROOT, "%.3f", d);
+    }
+}
@@ -0,0 +1,259 @@
+package com.mycompany.app;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.CharArrayMap;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * A precomputed surface form to lemma table, so lemmatizing is a lookup in
+ * the analyzer (see LemmaFilter) instead of a CoreNLP POS pipeline run.
+ *
+ * The table is built offline from CoreNLP's output over the corpus: every
+ * lowercased word gets the lemma CoreNLP gave it most often. Only words
+ * whose lemma differs from the word are kept. The file has one
+ * "word<TAB>lemma" line per entry.
+ *
+ *   build:   LemmaDictionary build <OUT> <FILE>...
+ *   compare: LemmaDictionary compare <FILE>...
+ *
+ * Files are wiki files (or questions.txt) in the resources folder. compare
+ * measures how far the dictionary is from CoreNLP on the files.
+ */
+public class LemmaDictionary {
+
+    // classpath resource used by LemmaFilterFactory and the engines
+    public static String RESOURCE = "lemma-dictionary.txt";
+
+    private final CharArrayMap<String> lemmas;
+
+    private LemmaDictionary(CharArrayMap<String> lemmas) {
+        this.lemmas = lemmas;
+    }
+
+    /*
+     * True if queries of a lemma index should go through the LemmaFilter
+     * (EngineOptions.queryLemmas).
+     */
+    public static boolean forQueries(EngineOptions options) {
+        return options.queryLemmas && isAvailable();
+    }
+
+    /*
+     * True if lemma indices should be built with the LemmaFilter
+     * (IndexerOptions.dictionaryLemmas).
+     */
+    public static boolean forIndexing(IndexerOptions options) {
+        return options.dictionaryLemmas && isAvailable();
+    }
+
+    /*
+     * True if the RESOURCE dictionary is on the classpath.
+     */
+    public static boolean isAvailable() {
+        return LemmaDictionary.class.getClassLoader().getResource(RESOURCE) != null;
+    }
+
+    public static LemmaDictionary read(InputStream in) throws IOException {
+        CharArrayMap<String> lemmas = new CharArrayMap<>(1 << 12, false);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int tab = line.indexOf('\t');
+            if (tab > 0)
+                lemmas.put(line.substring(0, tab), line.substring(tab + 1));
+        }
+        return new LemmaDictionary(lemmas);
+    }
+
+    /*
+     * The lemma of the lowercased word in buffer[0, length), or null if the
+     * word is its own lemma or unknown.
+     */
+    public String lookup(char[] buffer, int length) {
+        return lemmas.get(buffer, 0, length);
+    }
+
+    public String lookup(String word) {
+        return lemmas.get(word);
+    }
+
+    public int size() {
+        return lemmas.size();
+    }
+
+    /*
+     * Runs CoreNLP over the articles of the files and writes the dictionary.
+     */
+    public static void build(List<File> files, File out) throws IOException {
+        Map<String, Map<String, Integer>> counts = new HashMap<>();
+        try (LemmatizerPool pool = new LemmatizerPool(1)) {
+            for (String text : texts(files)) {
+                for (CoreLabel token : pool.tokens(text)) {
+                    String word = token.word().toLowerCase(Locale.ROOT);
+                    String lemma = token.lemma().toLowerCase(Locale.ROOT);
+                    if (lemma.isEmpty() || lemma.indexOf(' ') >= 0)
+                        continue;
+                    counts.computeIfAbsent(word, w -> new HashMap<>()).merge(lemma, 1, Integer::sum);
+                }
+            }
+        }
+
+        Map<String, String> entries = new TreeMap<>();
+        for (Map.Entry<String, Map<String, Integer>> e : counts.entrySet()) {
+            String best = null;
+            int bestCount = 0;
+            for (Map.Entry<String, Integer> lemma : e.getValue().entrySet()) {
+                if (lemma.getValue() > bestCount) {
+                    best = lemma.getKey();
+                    bestCount = lemma.getValue();
+                }
+            }
+            if (!best.equals(e.getKey()))
+                entries.put(e.getKey(), best);
+        }
+        List<String> lines = new ArrayList<>(entries.size());
+        for (Map.Entry<String, String> e : entries.entrySet()) {
+            lines.add(e.getKey() + "\t" + e.getValue());
+        }
+        Files.write(out.toPath(), lines, StandardCharsets.UTF_8);
+        System.out.println(entries.size() + " entries from " + counts.size() + " words written to " + out);
+    }
+
+    /*
+     * Compares the dictionary with CoreNLP on the files:
+     *  - word accuracy: how often the dictionary gives CoreNLP's lemma for a
+     *    CoreNLP token
+     *  - term overlap: how many of the index terms of the CoreNLP lemma path
+     *    (lemmas joined, then the plain analyzer) the dictionary path (raw
+     *    text through the analyzer with the LemmaFilter) also produces. The
+     *    tokenizers differ, so this is the number that matters for search.
+     *  - the time each path takes
+     */
+    public static void compare(List<File> files) throws IOException {
+        LemmaDictionary dictionary;
+        try (InputStream in = LemmaDictionary.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+            if (in == null)
+                throw new IOException(RESOURCE + " not found on the classpath");
+            dictionary = read(in);
+        }
+        Analyzer plain = Indexer.buildCustomAnalyzer(false, true);
+        Analyzer lemmaFilter = Indexer.buildCustomAnalyzer(false, true, true);
+
+        long tokens = 0;
+        long correct = 0;
+        long coreNlpTerms = 0;
+        long sharedTerms = 0;
+        long coreNlpNanos = 0;
+        long dictionaryNanos = 0;
+        try (LemmatizerPool pool = new LemmatizerPool(1)) {
+            pool.lemmatize("warm up");
+            for (String text : texts(files)) {
+                long start = System.nanoTime();
+                List<CoreLabel> labels = pool.tokens(text);
+                StringBuilder lemmaText = new StringBuilder();
+                for (CoreLabel token : labels) {
+                    lemmaText.append(token.lemma()).append(' ');
+                }
+                Map<String, Integer> expected = terms(plain, lemmaText.toString());
+                coreNlpNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                Map<String, Integer> actual = terms(lemmaFilter, text);
+                dictionaryNanos += System.nanoTime() - start;
+
+                for (CoreLabel token : labels) {
+                    String word = token.word().toLowerCase(Locale.ROOT);
+                    String lemma = dictionary.lookup(word);
+                    tokens++;
+                    if ((lemma == null ? word : lemma).equals(token.lemma().toLowerCase(Locale.ROOT)))
+                        correct++;
+                }
+                for (Map.Entry<String, Integer> e : expected.entrySet()) {
+                    coreNlpTerms += e.getValue();
+                    sharedTerms += Math.min(e.getValue(), actual.getOrDefault(e.getKey(), 0));
+                }
+            }
+        }
+        System.out.printf("dictionary entries: %d%n", dictionary.size());
+        System.out.printf("word accuracy: %.2f%% of %d tokens%n", 100.0 * correct / tokens, tokens);
+        System.out.printf("term overlap with CoreNLP: %.2f%% of %d terms%n",
+                100.0 * sharedTerms / coreNlpTerms, coreNlpTerms);
+        System.out.printf("CoreNLP: %.1f ms, dictionary: %.1f ms%n", coreNlpNanos / 1e6, dictionaryNanos / 1e6);
+    }
+
+    private static Map<String, Integer> terms(Analyzer analyzer, String text) throws IOException {
+        Map<String, Integer> terms = new HashMap<>();
+        try (TokenStream stream = analyzer.tokenStream("content", text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.merge(term.toString(), 1, Integer::sum);
+            }
+            stream.end();
+        }
+        return terms;
+    }
+
+    /*
+     * The content and categories of every article in the wiki files, or the
+     * lines of any other file.
+     */
+    private static List<String> texts(List<File> files) throws IOException {
+        List<String> texts = new ArrayList<>();
+        for (File file : files) {
+            if (!file.getName().startsWith("questions")) {
+                try (WikiDumpParser parser = WikiDumpParser.open(file)) {
+                    while (parser.next()) {
+                        WikiArticle article = parser.toArticle();
+                        texts.add(article.getContent());
+                        if (!article.getCategoriesLine().isEmpty())
+                            texts.add(article.getCategoriesLine().substring(11));
+                    }
+                }
+            } else {
+                for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+                    if (!line.trim().isEmpty())
+                        texts.add(line);
+                }
+            }
+        }
+        return texts;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2 || !(args[0].equals("build") || args[0].equals("compare"))) {
+            System.out.println("usage: LemmaDictionary build <OUT> <FILE>... | compare <FILE>...");
+            System.exit(1);
+        }
+        boolean build = args[0].equals("build");
+        List<File> files = new ArrayList<>();
+        for (int i = build ? 2 : 1; i < args.length; i++) {
+            files.add(new File("src/main/resources/" + args[i]));
+        }
+        try {
+            if (build)
+                build(files, new File(args[1]));
+            else
+                compare(files);
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.mycompany.app;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.KeywordAttribute;
+
+import java.io.IOException;
+
+/*
+ * Replaces every token found in a LemmaDictionary with its lemma. Expects
+ * lowercased tokens, so it goes after the lowercase filter. Tokens marked
+ * as keywords are left alone.
+ */
+public class LemmaFilter extends TokenFilter {
+
+    private final LemmaDictionary dictionary;
+    private final CharTermAttribute charTermAttr;
+    private final KeywordAttribute keywordAttr;
+
+    public LemmaFilter(TokenStream in, LemmaDictionary dictionary) {
+        super(in);
+        this.dictionary = dictionary;
+        this.charTermAttr = addAttribute(CharTermAttribute.class);
+        this.keywordAttr = addAttribute(KeywordAttribute.class);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        if (!input.incrementToken())
+            return false;
+        if (!keywordAttr.isKeyword()) {
+            String lemma = dictionary.lookup(charTermAttr.buffer(), charTermAttr.length());
+            if (lemma != null)
+                charTermAttr.setEmpty().append(lemma);
+        }
+        return true;
+    }
+}
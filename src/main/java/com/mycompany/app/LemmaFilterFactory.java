@@ -0,0 +1,48 @@
+package com.mycompany.app;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.util.ResourceLoader;
+import org.apache.lucene.analysis.util.ResourceLoaderAware;
+import org.apache.lucene.analysis.util.TokenFilterFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Factory for LemmaFilter. The "dictionary" argument names the dictionary
+ * resource (LemmaDictionary.RESOURCE by default). A dictionary is only
+ * loaded once, however many analyzers use it.
+ */
+public class LemmaFilterFactory extends TokenFilterFactory implements ResourceLoaderAware {
+
+    private static final Map<String, LemmaDictionary> LOADED = new ConcurrentHashMap<>();
+
+    private final String dictionaryName;
+    private LemmaDictionary dictionary;
+
+    public LemmaFilterFactory(Map<String, String> args) {
+        super(args);
+        this.dictionaryName = get(args, "dictionary", LemmaDictionary.RESOURCE);
+        if (!args.isEmpty())
+            throw new IllegalArgumentException("Unknown parameters: " + args);
+    }
+
+    @Override
+    public void inform(ResourceLoader loader) throws IOException {
+        LemmaDictionary loaded = LOADED.get(dictionaryName);
+        if (loaded == null) {
+            try (InputStream in = loader.openResource(dictionaryName)) {
+                loaded = LemmaDictionary.read(in);
+            }
+            LOADED.putIfAbsent(dictionaryName, loaded);
+        }
+        this.dictionary = loaded;
+    }
+
+    @Override
+    public TokenStream create(TokenStream tokenStream) {
+        return new LemmaFilter(tokenStream, dictionary);
+    }
+}
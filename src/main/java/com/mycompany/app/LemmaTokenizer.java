@@ -0,0 +1,182 @@
+package com.mycompany.app;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.util.AttributeFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Tokenizes with CoreNLP and emits the lemma of every token, with the
+ * offsets of the word in the original text, straight into the analysis
+ * chain.
+ *
+ * CoreNLP needs the whole text for sentence splitting and POS tagging, so
+ * reset reads the input before the first token. Lemmas are not lowercased;
+ * the lowercase filter after it does that.
+ *
+ * Replaces the old CoreNLP path of the Indexer, which joined every lemma of
+ * an article into one String for the standard tokenizer to split again.
+ * To give the same tokens, a lemma that is not all letters and digits
+ * (punctuation, "'s", URLs, hyphenated words) still goes through a
+ * standard tokenizer on its own; its pieces get the offsets of the whole
+ * word.
+ */
+public final class LemmaTokenizer extends Tokenizer {
+
+    // longer lemmas are split by the standard tokenizer, at its default limit
+    private static final int MAX_TOKEN_LENGTH = StandardAnalyzer.DEFAULT_MAX_TOKEN_LENGTH;
+    private static final char CJK_START = '\u2E80';
+    // the buffers of a text longer than this are dropped on close rather than kept for the next one
+    private static final int MAX_KEPT_BUFFER = 1 << 20;
+
+    private final LemmatizerPool pool;
+    private final CharTermAttribute termAttr = addAttribute(CharTermAttribute.class);
+    private final OffsetAttribute offsetAttr = addAttribute(OffsetAttribute.class);
+
+    // splits the lemmas that are not plain words
+    private final StandardTokenizer splitter = new StandardTokenizer();
+    private final CharTermAttribute splitTermAttr = splitter.addAttribute(CharTermAttribute.class);
+    private final List<String> pieces = new ArrayList<>();
+    private int nextPiece;
+    private int pieceStart;
+    private int pieceEnd;
+
+    private final char[] readBuffer = new char[8192];
+    private StringBuilder text = new StringBuilder();
+    // the lemmas of the text and the offsets of their words; the CoreNLP
+    // annotation itself is dropped once these are copied out
+    private String[] lemmas = new String[0];
+    private int[] starts = new int[0];
+    private int[] ends = new int[0];
+    private int count;
+    private int next;
+    private int finalOffset;
+
+    public LemmaTokenizer(LemmatizerPool pool) {
+        this.pool = pool;
+    }
+
+    public LemmaTokenizer(AttributeFactory factory, LemmatizerPool pool) {
+        super(factory);
+        this.pool = pool;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        text.setLength(0);
+        int n;
+        while ((n = input.read(readBuffer)) > 0) {
+            text.append(readBuffer, 0, n);
+        }
+        count = 0;
+        if (!isBlank(text)) {
+            List<CoreLabel> tokens = pool.tokens(text.toString());
+            if (lemmas.length < tokens.size()) {
+                lemmas = new String[tokens.size()];
+                starts = new int[tokens.size()];
+                ends = new int[tokens.size()];
+            }
+            for (CoreLabel token : tokens) {
+                lemmas[count] = token.lemma();
+                starts[count] = token.beginPosition();
+                ends[count] = token.endPosition();
+                count++;
+            }
+        }
+        next = 0;
+        pieces.clear();
+        nextPiece = 0;
+        finalOffset = correctOffset(text.length());
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        clearAttributes();
+        while (nextPiece == pieces.size()) {
+            if (next == count)
+                return false;
+            String lemma = lemmas[next];
+            int start = correctOffset(starts[next]);
+            int end = correctOffset(ends[next]);
+            next++;
+            if (lemma == null || lemma.isEmpty())
+                continue;
+            if (isWord(lemma)) {
+                termAttr.setEmpty().append(lemma);
+                offsetAttr.setOffset(start, end);
+                return true;
+            }
+            split(lemma);
+            pieceStart = start;
+            pieceEnd = end;
+        }
+        termAttr.setEmpty().append(pieces.get(nextPiece++));
+        offsetAttr.setOffset(pieceStart, pieceEnd);
+        return true;
+    }
+
+    private void split(String lemma) throws IOException {
+        pieces.clear();
+        nextPiece = 0;
+        splitter.setReader(new StringReader(lemma));
+        splitter.reset();
+        while (splitter.incrementToken()) {
+            pieces.add(splitTermAttr.toString());
+        }
+        splitter.end();
+        splitter.close();
+    }
+
+    @Override
+    public void end() throws IOException {
+        super.end();
+        offsetAttr.setOffset(finalOffset, finalOffset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        Arrays.fill(lemmas, 0, count, null);
+        count = 0;
+        pieces.clear();
+        nextPiece = 0;
+        if (text.capacity() > MAX_KEPT_BUFFER) {
+            text = new StringBuilder();
+            lemmas = new String[0];
+            starts = new int[0];
+            ends = new int[0];
+        } else {
+            text.setLength(0);
+        }
+    }
+
+    private static boolean isWord(String lemma) {
+        if (lemma.length() > MAX_TOKEN_LENGTH)
+            return false;
+        for (int i = 0; i < lemma.length(); i++) {
+            char c = lemma.charAt(i);
+            // CJK text is split into single characters by the standard tokenizer
+            if (!Character.isLetterOrDigit(c) || c >= CJK_START)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean isBlank(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+}
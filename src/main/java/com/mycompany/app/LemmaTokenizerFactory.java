@@ -0,0 +1,26 @@
+package com.mycompany.app;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.util.TokenizerFactory;
+import org.apache.lucene.util.AttributeFactory;
+
+import java.util.Map;
+
+/*
+ * Factory for LemmaTokenizer. Every tokenizer borrows its CoreNLP pipelines
+ * from LemmatizerPool.shared(), so however many analyzers and threads use
+ * it, there is at most one pipeline per core.
+ */
+public class LemmaTokenizerFactory extends TokenizerFactory {
+
+    public LemmaTokenizerFactory(Map<String, String> args) {
+        super(args);
+        if (!args.isEmpty())
+            throw new IllegalArgumentException("Unknown parameters: " + args);
+    }
+
+    @Override
+    public Tokenizer create(AttributeFactory factory) {
+        return new LemmaTokenizer(factory, LemmatizerPool.shared());
+    }
+}
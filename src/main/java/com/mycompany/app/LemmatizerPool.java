@@ -0,0 +1,223 @@
+package com.mycompany.app;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.AnnotationPipeline;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.util.CoreMap;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * A pool of CoreNLP lemmatization pipelines, so several threads can
+ * lemmatize at once. A thread borrows a pipeline for a whole batch of texts
+ * and hands it back when done. The texts of a batch are still annotated one
+ * after another.
+ *
+ * The pool also has its own workers (one per pipeline) behind a bounded
+ * work queue. When the queue is full, the submitting thread runs the task
+ * itself, which keeps a fast reader from piling up unlemmatized articles.
+ */
+public class LemmatizerPool implements Closeable {
+
+    private static final int QUEUE_PER_WORKER = 4;
+
+    private final int size;
+    private final BlockingQueue<AnnotationPipeline> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger workerCount = new AtomicInteger();
+    private final ThreadPoolExecutor workers;
+
+    private static LemmatizerPool shared; // see shared()
+
+    /*
+     * No pipeline is created until the first text is lemmatized, and the
+     * rest only once that many threads are lemmatizing at the same time, so
+     * a pool that is never used never loads the CoreNLP models.
+     */
+    public LemmatizerPool(int size) {
+        this.size = Math.max(1, size);
+        this.workers = new ThreadPoolExecutor(this.size, this.size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(this.size * QUEUE_PER_WORKER), r -> {
+                    Thread t = new Thread(r, "lemmatizer-" + workerCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /*
+     * The pool of the LemmaTokenizers, with a pipeline per core at most,
+     * created on first use.
+     */
+    public static synchronized LemmatizerPool shared() {
+        if (shared == null)
+            shared = new LemmatizerPool(Runtime.getRuntime().availableProcessors());
+        return shared;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /*
+     * Lemmatizes one text on the calling thread.
+     */
+    public List<String> lemmatize(String text) {
+        AnnotationPipeline pipeline = borrow();
+        try {
+            return lemmatize(pipeline, text);
+        } finally {
+            idle.add(pipeline);
+        }
+    }
+
+    /*
+     * Lemmatizes many texts (articles or sentences) with one pipeline, on the
+     * calling thread. The lemmas come back in the same order as the texts.
+     *
+     * This is not batched annotation: CoreNLP still annotates the texts one
+     * at a time, as lemmatize does. The batch only keeps one pipeline for all
+     * of them and makes one task of them for the workers. The parallelism is
+     * across batches, one per pipeline, not inside CoreNLP.
+     */
+    public List<List<String>> lemmatizeAll(List<String> texts) {
+        List<List<String>> result = new ArrayList<>(texts.size());
+        AnnotationPipeline pipeline = borrow();
+        try {
+            for (String text : texts) {
+                result.add(lemmatize(pipeline, text));
+            }
+        } finally {
+            idle.add(pipeline);
+        }
+        return result;
+    }
+
+    /*
+     * The CoreNLP tokens of a text, with their words and lemmas, on the
+     * calling thread.
+     */
+    public List<CoreLabel> tokens(String text) {
+        AnnotationPipeline pipeline = borrow();
+        try {
+            Annotation document = new Annotation(text);
+            pipeline.annotate(document);
+            List<CoreLabel> tokens = new ArrayList<>();
+            for (CoreMap sentence : document.get(CoreAnnotations.SentencesAnnotation.class)) {
+                tokens.addAll(sentence.get(CoreAnnotations.TokensAnnotation.class));
+            }
+            return tokens;
+        } finally {
+            idle.add(pipeline);
+        }
+    }
+
+    /*
+     * Lemmatizes many texts on one of the pool's workers.
+     */
+    public Future<List<List<String>>> submit(List<String> texts) {
+        return submit(() -> lemmatizeAll(texts));
+    }
+
+    /*
+     * Runs a task on one of the pool's workers. The task is expected to use
+     * lemmatize or lemmatizeAll.
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        return workers.submit(task);
+    }
+
+    @Override
+    public void close() {
+        workers.shutdown();
+    }
+
+    /*
+     * Takes an idle pipeline, creating a new one while the pool is not full.
+     */
+    private AnnotationPipeline borrow() {
+        AnnotationPipeline pipeline = idle.poll();
+        if (pipeline != null)
+            return pipeline;
+        if (created.incrementAndGet() <= size) {
+            try {
+                return newPipeline();
+            } catch (RuntimeException | Error e) {
+                // the slot is free again, or the pool would wait forever
+                // for a pipeline that was never made
+                created.decrementAndGet();
+                throw e;
+            }
+        }
+        created.decrementAndGet();
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for a CoreNLP pipeline", e);
+        }
+    }
+
+    /*
+     * Pulled from: https://stackoverflow.com/questions/1578062/lemmatization-java
+     */
+    private static AnnotationPipeline newPipeline() {
+        // Create StanfordCoreNLP object properties, with POS tagging
+        // (required for lemmatization), and lemmatization
+        Properties props;
+        props = new Properties();
+        props.put("annotators", "tokenize, ssplit, pos, lemma");
+
+        /*
+         * This is a pipeline that takes in a string and returns various analyzed linguistic forms.
+         * The String is tokenized via a tokenizer (such as PTBTokenizerAnnotator),
+         * and then other sequence model style annotation can be used to add things like lemmas,
+         * POS tags, and named entities. These are returned as a list of CoreLabels.
+         * Other analysis components build and store parse trees, dependency graphs, etc.
+         *
+         * This class is designed to apply multiple Annotators to an Annotation.
+         * The idea is that you first build up the pipeline by adding Annotators,
+         * and then you take the objects you wish to annotate and pass them in and
+         * get in return a fully annotated object.
+         *
+         *  StanfordCoreNLP loads a lot of models, so you probably
+         *  only want to do this once per execution
+         */
+        return new StanfordCoreNLP(props);
+    }
+
+    /*
+     * Pulled from: https://stackoverflow.com/questions/1578062/lemmatization-java
+     */
+    private static List<String> lemmatize(AnnotationPipeline pipeline, String documentText) {
+        List<String> lemmas = new LinkedList<String>();
+        // Create an empty Annotation just with the given text
+        Annotation document = new Annotation(documentText);
+        // run all Annotators on this text
+        pipeline.annotate(document);
+        // Iterate over all of the sentences found
+        List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);
+        for(CoreMap sentence: sentences) {
+            // Iterate over all tokens in a sentence
+            for (CoreLabel token: sentence.get(CoreAnnotations.TokensAnnotation.class)) {
+                // Retrieve and add the lemma for each word into the
+                // list of lemmas
+                lemmas.add(token.get(CoreAnnotations.LemmaAnnotation.class));
+            }
+        }
+        return lemmas;
+    }
+}
@@ -0,0 +1,208 @@
+package com.mycompany.app;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/*
+ * Process wide registry of stage latencies, counters and gauges.
+ *
+ * Indexing records "index.parse", "index.lemmatize", "index.add" and
+ * "index.flush" and counts "index.docs" and "index.bytes"; answering
+ * records "query.build", "query.search" and "query.titles" and counts
+ * "query.count" and "query.hits". Everything is readable through JMX (see
+ * MetricsMXBean) and can be written to a JSON file periodically with
+ * startJsonDump.
+ *
+ * Timers and counters are kept in static fields by the classes that record
+ * them, so they are never removed; reset zeroes them in place. Gauges read
+ * one object (an IndexWriter, an open index), so they are named under a
+ * scope of that object, e.g. "index.writer.3.ramBytes", and removed with
+ * removeGauges when it is closed.
+ */
+public class Metrics implements MetricsMXBean {
+
+    private static final Metrics INSTANCE = new Metrics();
+
+    private final Map<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final AtomicInteger scopes = new AtomicInteger();
+    private ScheduledExecutorService dumper;
+
+    public static Metrics get() {
+        return INSTANCE;
+    }
+
+    public LatencyHistogram timer(String name) {
+        return timers.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /*
+     * Registers a gauge, replacing any earlier gauge of the same name. The
+     * supplier is called on every read, so it should be cheap and must not
+     * throw; return -1 when the value is unavailable.
+     */
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    public void removeGauge(String name) {
+        gauges.remove(name);
+    }
+
+    /*
+     * A new gauge name prefix, e.g. "index.writer.3" for "index.writer", so
+     * that objects of the same kind open at once do not replace each other's
+     * gauges.
+     */
+    public String newScope(String prefix) {
+        return prefix + "." + scopes.incrementAndGet();
+    }
+
+    /*
+     * Removes every gauge registered under the scope.
+     */
+    public void removeGauges(String scope) {
+        gauges.keySet().removeIf(name -> name.startsWith(scope + "."));
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> result = new TreeMap<>();
+        counters.forEach((name, adder) -> result.put(name, adder.sum()));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        Map<String, Long> result = new TreeMap<>();
+        gauges.forEach((name, gauge) -> result.put(name, gauge.getAsLong()));
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getLatenciesMillis() {
+        Map<String, Double> result = new TreeMap<>();
+        timers.forEach((name, h) -> {
+            result.put(name + ".p50", h.getPercentileNanos(50) / 1e6);
+            result.put(name + ".p95", h.getPercentileNanos(95) / 1e6);
+            result.put(name + ".p99", h.getPercentileNanos(99) / 1e6);
+            result.put(name + ".max", h.getMaxNanos() / 1e6);
+        });
+        return result;
+    }
+
+    @Override
+    public String getJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"timestamp\":").append(System.currentTimeMillis());
+        sb.append(",\"counters\":{");
+        appendLongs(sb, getCounters());
+        sb.append("},\"gauges\":{");
+        appendLongs(sb, getGauges());
+        sb.append("},\"latencies\":{");
+        boolean first = true;
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(timers).entrySet()) {
+            LatencyHistogram h = e.getValue();
+            if (!first)
+                sb.append(',');
+            first = false;
+            Json.quote(sb, e.getKey());
+            sb.append(":{\"count\":").append(h.getCount());
+            sb.append(",\"mean_ms\":").append(Json.number(h.getMeanNanos() / 1e6));
+            sb.append(",\"p50_ms\":").append(Json.number(h.getPercentileNanos(50) / 1e6));
+            sb.append(",\"p95_ms\":").append(Json.number(h.getPercentileNanos(95) / 1e6));
+            sb.append(",\"p99_ms\":").append(Json.number(h.getPercentileNanos(99) / 1e6));
+            sb.append(",\"max_ms\":").append(Json.number(h.getMaxNanos() / 1e6));
+            sb.append('}');
+        }
+        return sb.append("}}").toString();
+    }
+
+    private static void appendLongs(StringBuilder sb, Map<String, Long> values) {
+        boolean first = true;
+        for (Map.Entry<String, Long> e : values.entrySet()) {
+            if (!first)
+                sb.append(',');
+            first = false;
+            Json.quote(sb, e.getKey()).append(':').append(e.getValue());
+        }
+    }
+
+    @Override
+    public void reset() {
+        timers.values().forEach(LatencyHistogram::reset);
+        counters.values().forEach(LongAdder::reset);
+    }
+
+    /*
+     * Registers this registry with the platform MBean server. Safe to call
+     * more than once.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.mycompany.app:type=Metrics");
+            if (!server.isRegistered(name))
+                server.registerMBean(this, name);
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /*
+     * Writes getJson() to the file every periodSeconds on a daemon thread,
+     * replacing the file so a reader never sees half a dump.
+     */
+    public synchronized void startJsonDump(File file, long periodSeconds) {
+        stopJsonDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> writeJson(file), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /*
+     * Stops the periodic dump; the caller should writeJson once more if the
+     * final numbers are wanted.
+     */
+    public synchronized void stopJsonDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    public void writeJson(File file) {
+        try {
+            File tmp = new File(file.getPath() + ".tmp");
+            Files.write(tmp.toPath(), getJson().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
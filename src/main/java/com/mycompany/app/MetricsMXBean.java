@@ -0,0 +1,23 @@
+package com.mycompany.app;
+
+import java.util.Map;
+
+/*
+ * JMX view of Metrics, registered as com.mycompany.app:type=Metrics.
+ */
+public interface MetricsMXBean {
+
+    Map<String, Long> getCounters();
+
+    Map<String, Long> getGauges();
+
+    /*
+     * "<stage>.p50", "<stage>.p95", "<stage>.p99" and "<stage>.max" in
+     * milliseconds for every timed stage.
+     */
+    Map<String, Double> getLatenciesMillis();
+
+    String getJson();
+
+    void reset();
+}
@@ -0,0 +1,172 @@
+package com.mycompany.app;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.Weight;
+
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Slow-query log of AnswerEngine, one JSON object per line:
+ *
+ *   {"time": 1718000000000, "ms": 12.345, "hits": 1074, "clauses": 23,
+ *    "query": "content:barri ...",
+ *    "terms": [{"term": "content:barri", "df": 90}, ...],
+ *    "profile": [{"clause": "content:barri", "occur": "SHOULD", "df": 90,
+ *                 "matches": 90, "cost": 90, "ms": 0.123}, ...]}
+ *
+ * The terms are every term of the query, categories included, with their
+ * document frequency in the searched reader. "profile" is only there when
+ * profiling: every top-level clause of the query is then run again on its
+ * own, scoring all of its matches, and timed. The profile runs after the
+ * query, so the postings are already in the page cache; it is for
+ * comparing clauses, not for absolute times.
+ */
+public class QueryLog implements Closeable {
+
+    private final PrintWriter out;
+    private final boolean closeOut;
+    private final long thresholdNanos;
+    private final boolean profile;
+
+    /*
+     * Logs the queries that take at least thresholdMillis (0 logs every
+     * query) to the file, appending, or to System.err if file is null.
+     */
+    public QueryLog(String file, long thresholdMillis, boolean profile) throws IOException {
+        if (file == null) {
+            this.out = new PrintWriter(new OutputStreamWriter(System.err, StandardCharsets.UTF_8), true);
+            this.closeOut = false;
+        } else {
+            this.out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file, true),
+                    StandardCharsets.UTF_8), true);
+            this.closeOut = true;
+        }
+        this.thresholdNanos = thresholdMillis * 1_000_000;
+        this.profile = profile;
+    }
+
+    /*
+     * Writes the query if it was slow. Errors are printed, not thrown, so the
+     * search itself still succeeds.
+     */
+    public void log(IndexSearcher searcher, Query query, long totalHits, long nanos) {
+        if (nanos < thresholdNanos || query == null)
+            return;
+        try {
+            StringBuilder sb = new StringBuilder(256);
+            sb.append("{\"time\": ").append(System.currentTimeMillis())
+                    .append(", \"ms\": ").append(Json.number(nanos / 1e6))
+                    .append(", \"hits\": ").append(totalHits)
+                    .append(", \"clauses\": ").append(query instanceof BooleanQuery
+                            ? ((BooleanQuery) query).clauses().size() : 1)
+                    .append(", \"query\": ");
+            Json.quote(sb, query.toString());
+            sb.append(", \"terms\": [");
+            List<Term> terms = new ArrayList<>();
+            collectTerms(query, terms);
+            for (int i = 0; i < terms.size(); i++) {
+                if (i > 0)
+                    sb.append(", ");
+                sb.append("{\"term\": ");
+                Json.quote(sb, terms.get(i).toString());
+                sb.append(", \"df\": ").append(searcher.getIndexReader().docFreq(terms.get(i))).append('}');
+            }
+            sb.append(']');
+            if (profile)
+                appendProfile(sb, searcher, query);
+            sb.append('}');
+            synchronized (out) {
+                out.println(sb);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void appendProfile(StringBuilder sb, IndexSearcher searcher, Query query) throws IOException {
+        List<BooleanClause> clauses = query instanceof BooleanQuery
+                ? ((BooleanQuery) query).clauses()
+                : java.util.Collections.singletonList(new BooleanClause(query, BooleanClause.Occur.MUST));
+        sb.append(", \"profile\": [");
+        for (int i = 0; i < clauses.size(); i++) {
+            BooleanClause clause = clauses.get(i);
+            long start = System.nanoTime();
+            Weight weight = searcher.createWeight(searcher.rewrite(clause.getQuery()),
+                    clause.getOccur() != BooleanClause.Occur.FILTER, 1f);
+            long matches = 0;
+            long cost = 0;
+            for (LeafReaderContext leaf : searcher.getIndexReader().leaves()) {
+                Scorer scorer = weight.scorer(leaf);
+                if (scorer == null)
+                    continue;
+                DocIdSetIterator iterator = scorer.iterator();
+                cost += iterator.cost();
+                while (iterator.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+                    scorer.score();
+                    matches++;
+                }
+            }
+            long nanos = System.nanoTime() - start;
+
+            if (i > 0)
+                sb.append(", ");
+            sb.append("{\"clause\": ");
+            Json.quote(sb, clause.getQuery().toString());
+            sb.append(", \"occur\": \"").append(clause.getOccur().name()).append('"');
+            Query inner = unboost(clause.getQuery());
+            if (inner instanceof TermQuery)
+                sb.append(", \"df\": ").append(searcher.getIndexReader().docFreq(((TermQuery) inner).getTerm()));
+            sb.append(", \"matches\": ").append(matches)
+                    .append(", \"cost\": ").append(cost)
+                    .append(", \"ms\": ").append(Json.number(nanos / 1e6)).append('}');
+        }
+        sb.append(']');
+    }
+
+    /*
+     * The terms of term queries and category filters, in the order of the
+     * query.
+     */
+    private static void collectTerms(Query query, List<Term> terms) {
+        query = unboost(query);
+        if (query instanceof TermQuery) {
+            terms.add(((TermQuery) query).getTerm());
+        } else if (query instanceof CategoryFilterQuery) {
+            terms.addAll(((CategoryFilterQuery) query).getTerms());
+        } else if (query instanceof BooleanQuery) {
+            for (BooleanClause clause : ((BooleanQuery) query).clauses()) {
+                collectTerms(clause.getQuery(), terms);
+            }
+        }
+    }
+
+    private static Query unboost(Query query) {
+        while (query instanceof BoostQuery) {
+            query = ((BoostQuery) query).getQuery();
+        }
+        return query;
+    }
+
+    @Override
+    public void close() {
+        out.flush();
+        if (closeOut)
+            out.close();
+    }
+}
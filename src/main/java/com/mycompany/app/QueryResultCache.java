@@ -0,0 +1,201 @@
+package com.mycompany.app;
+
+import org.apache.lucene.search.TopDocs;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Bounded LRU cache of search results, keyed on the normalized (content,
+ * categories, hits, similarity, search settings) of a query. Entries are
+ * evicted when there are too many of them or when their estimated size goes
+ * over the limit.
+ *
+ * The cache belongs to one reader generation. Asking for a newer generation
+ * (the index changed) drops every entry; a get or put from a searcher that
+ * is still on an older generation misses or is ignored, so the generation
+ * only moves forward.
+ *
+ * Cached TopDocs are shared between callers and must not be modified.
+ */
+public class QueryResultCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1024;
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    // rough per object costs, for the size estimate
+    private static final long ENTRY_OVERHEAD = 128;
+    private static final long SCORE_DOC_BYTES = 32;
+
+    private final int maxEntries;
+    private final long maxBytes;
+
+    private final LinkedHashMap<Key, TopDocs> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long generation = -1;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public QueryResultCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    public QueryResultCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /*
+     * Returns the cached result, or null on a miss.
+     */
+    public synchronized TopDocs get(Key key, long readerGeneration) {
+        TopDocs result = checkGeneration(readerGeneration) ? entries.get(key) : null;
+        if (result == null)
+            misses.incrementAndGet();
+        else
+            hits.incrementAndGet();
+        return result;
+    }
+
+    public synchronized void put(Key key, TopDocs result, long readerGeneration) {
+        if (!checkGeneration(readerGeneration))
+            return;
+        long size = sizeOf(key, result);
+        if (size > maxBytes || maxEntries <= 0)
+            return;
+        TopDocs old = entries.put(key, result);
+        if (old != null)
+            bytes -= sizeOf(key, old);
+        bytes += size;
+
+        Iterator<Map.Entry<Key, TopDocs>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries || bytes > maxBytes) {
+            Map.Entry<Key, TopDocs> entry = eldest.next();
+            bytes -= sizeOf(entry.getKey(), entry.getValue());
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("entries: %d, bytes: %d, hits: %d, misses: %d, hit rate: %.3f, evictions: %d, invalidations: %d",
+                size(), getBytes(), getHits(), getMisses(), getHitRate(), getEvictions(), getInvalidations());
+    }
+
+    /*
+     * Moves to readerGeneration if it is newer, dropping every entry. False
+     * if it is older than the cache's, so the caller leaves the cache alone.
+     */
+    private boolean checkGeneration(long readerGeneration) {
+        if (readerGeneration < generation)
+            return false;
+        if (readerGeneration > generation) {
+            if (!entries.isEmpty())
+                invalidations.incrementAndGet();
+            clear();
+            generation = readerGeneration;
+        }
+        return true;
+    }
+
+    private static long sizeOf(Key key, TopDocs result) {
+        return ENTRY_OVERHEAD + key.sizeInBytes() + SCORE_DOC_BYTES * result.scoreDocs.length;
+    }
+
+    /*
+     * Runs of whitespace are collapsed and the ends trimmed. Case is kept,
+     * since the query parser treats AND/OR/NOT differently from and/or/not.
+     */
+    public static String normalize(String text) {
+        return text.trim().replaceAll("\\s+", " ");
+    }
+
+    public static final class Key {
+        private final String content;
+        private final String categories;
+        private final int hits;
+        private final String similarity;
+        private final String settings;
+        private final int hash;
+
+        public Key(String content, String categories, int hits, String similarity) {
+            this(content, categories, hits, similarity, "");
+        }
+
+        /*
+         * settings describes anything else that changes the results, such as
+         * the category mode or the cascade.
+         */
+        public Key(String content, String categories, int hits, String similarity, String settings) {
+            this.content = normalize(content);
+            this.categories = categories == null ? null : normalize(categories);
+            this.hits = hits;
+            this.similarity = similarity;
+            this.settings = settings;
+            this.hash = Objects.hash(this.content, this.categories, hits, similarity, settings);
+        }
+
+        long sizeInBytes() {
+            return 2L * (content.length() + (categories == null ? 0 : categories.length()) + similarity.length()
+                    + settings.length());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return hits == other.hits
+                    && content.equals(other.content)
+                    && Objects.equals(categories, other.categories)
+                    && similarity.equals(other.similarity)
+                    && settings.equals(other.settings);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.mycompany.app;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.SearcherFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * SearcherManager for a ShardedIndex: searches one MultiReader over the
+ * shards, and on refresh reopens the shards that changed, sharing the
+ * readers of the others with the previous MultiReader.
+ */
+public class ShardSearcherManager extends ReferenceManager<IndexSearcher> {
+
+    private final SearcherFactory searcherFactory;
+
+    /*
+     * Takes over the shard readers; they are closed with the manager.
+     */
+    public ShardSearcherManager(List<DirectoryReader> shards, SearcherFactory searcherFactory) throws IOException {
+        this.searcherFactory = searcherFactory;
+        this.current = newSearcher(shards);
+        for (DirectoryReader shard : shards)
+            shard.decRef(); // now held by the MultiReader only
+    }
+
+    @Override
+    protected void decRef(IndexSearcher reference) throws IOException {
+        reference.getIndexReader().decRef();
+    }
+
+    @Override
+    protected IndexSearcher refreshIfNeeded(IndexSearcher referenceToRefresh) throws IOException {
+        List<DirectoryReader> shards = ((ShardReader) referenceToRefresh.getIndexReader()).shards;
+        List<DirectoryReader> refreshed = new ArrayList<>(shards.size());
+        List<DirectoryReader> opened = new ArrayList<>();
+        for (DirectoryReader shard : shards) {
+            DirectoryReader newShard = DirectoryReader.openIfChanged(shard);
+            if (newShard == null) {
+                refreshed.add(shard);
+            } else {
+                refreshed.add(newShard);
+                opened.add(newShard);
+            }
+        }
+        if (opened.isEmpty())
+            return null;
+        try {
+            return newSearcher(refreshed);
+        } finally {
+            for (DirectoryReader shard : opened)
+                shard.decRef();
+        }
+    }
+
+    @Override
+    protected boolean tryIncRef(IndexSearcher reference) {
+        return reference.getIndexReader().tryIncRef();
+    }
+
+    @Override
+    protected int getRefCount(IndexSearcher reference) {
+        return reference.getIndexReader().getRefCount();
+    }
+
+    private IndexSearcher newSearcher(List<DirectoryReader> shards) throws IOException {
+        return searcherFactory.newSearcher(new ShardReader(shards), null);
+    }
+
+    /*
+     * The version of a reader: the DirectoryReader version, or for a sharded
+     * reader the sum of its shards' versions, which grows whenever a shard
+     * is reopened.
+     */
+    public static long version(IndexReader reader) {
+        if (reader instanceof ShardReader) {
+            long version = 0;
+            for (DirectoryReader shard : ((ShardReader) reader).shards)
+                version += shard.getVersion();
+            return version;
+        }
+        return ((DirectoryReader) reader).getVersion();
+    }
+
+    /*
+     * A MultiReader that remembers its shards. It holds a reference to each
+     * and releases them when closed.
+     */
+    static class ShardReader extends MultiReader {
+        final List<DirectoryReader> shards;
+
+        ShardReader(List<DirectoryReader> shards) throws IOException {
+            super(shards.toArray(new IndexReader[0]), false);
+            this.shards = shards;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.mycompany.app;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.Directory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/*
+ * An index split into shards: the index directory holds one sub-index per
+ * shard, "shard-0", "shard-1" and so on, each a complete index of its own.
+ * Every wiki file goes to one shard, chosen from its name, so a file stays
+ * in the same shard when the index is written again and each shard can be
+ * refreshed on its own (see Indexer.refreshWikiFiles). The files in an
+ * archive are spread over the shards the same way, by their "archive!entry"
+ * source: every shard reads the archive and indexes only its own entries
+ * (see Indexer.setSources), so the archive is decompressed once per shard.
+ *
+ * AnswerEngine opens a sharded index as one MultiReader (see
+ * ShardSearcherManager). The IndexSearcher computes term statistics over
+ * the whole MultiReader, so scores are the same as with one index.
+ */
+public class ShardedIndex {
+
+    private static final String SHARD_PREFIX = "shard-";
+
+    private ShardedIndex() {
+    }
+
+    public static Path shardPath(Path indexDir, int shard) {
+        return indexDir.resolve(SHARD_PREFIX + shard);
+    }
+
+    public static boolean isSharded(Path indexDir) {
+        return Files.isDirectory(shardPath(indexDir, 0));
+    }
+
+    /*
+     * The number of shards in the index directory.
+     */
+    public static int shardCount(Path indexDir) {
+        int shards = 0;
+        while (Files.isDirectory(shardPath(indexDir, shards)))
+            shards++;
+        return shards;
+    }
+
+    /*
+     * The shard of a wiki file, from its name.
+     */
+    public static int shardOf(File file, int shards) {
+        return shardOf(file.getName(), shards);
+    }
+
+    /*
+     * The shard of the documents with the given source (see
+     * WikiDumpParser.getSource). For a plain file this is shardOf(file).
+     */
+    public static int shardOf(String source, int shards) {
+        return Math.floorMod(source.hashCode(), shards);
+    }
+
+    /*
+     * Writes the files into the given number of shards, one Indexer per
+     * shard from newIndexer (given the shard's path), all shards at once.
+     * The threads are divided between the shards. Shards left over from an
+     * earlier layout with more shards are deleted.
+     */
+    public static void build(Path indexDir, List<File> files, int shards, int threads,
+                             Function<String, Indexer> newIndexer) throws IOException {
+        List<List<File>> shardFiles = new ArrayList<>();
+        for (int i = 0; i < shards; i++)
+            shardFiles.add(new ArrayList<>());
+        for (File file : files) {
+            if (DecompressingChannel.isArchive(file)) {
+                for (List<File> filesOfShard : shardFiles)
+                    filesOfShard.add(file);
+            } else {
+                shardFiles.get(shardOf(file, shards)).add(file);
+            }
+        }
+
+        long start = System.nanoTime();
+        int threadsPerShard = Math.max(1, threads / shards);
+        ExecutorService executor = Executors.newFixedThreadPool(shards);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < shards; i++) {
+                String path = shardPath(indexDir, i).toString();
+                List<File> filesOfShard = shardFiles.get(i);
+                int shard = i;
+                futures.add(executor.submit(() -> {
+                    Indexer indexer = newIndexer.apply(path);
+                    indexer.setSources(source -> shardOf(source, shards) == shard);
+                    indexer.refreshWikiFiles(filesOfShard, threadsPerShard);
+                    indexer.close();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("sharded build interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("building a shard failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        deleteShards(indexDir, shards);
+        System.out.printf("built %d shards of %s in %.1f s%n", shards, indexDir, (System.nanoTime() - start) / 1e9);
+    }
+
+    /*
+     * Opens a reader on every shard.
+     */
+    public static List<DirectoryReader> open(Path indexDir, DirectoryType type) throws IOException {
+        List<DirectoryReader> readers = new ArrayList<>();
+        try {
+            for (int i = 0; i < shardCount(indexDir); i++) {
+                Directory directory = type.open(shardPath(indexDir, i));
+                readers.add(DirectoryReader.open(directory));
+            }
+        } catch (IOException e) {
+            for (DirectoryReader reader : readers)
+                reader.close();
+            throw e;
+        }
+        return readers;
+    }
+
+    /*
+     * Total length of the files of all shards, or -1 if they can not be read.
+     */
+    public static long size(Path indexDir) {
+        long size = 0;
+        for (int i = 0; i < shardCount(indexDir); i++) {
+            File[] files = shardPath(indexDir, i).toFile().listFiles();
+            if (files == null)
+                return -1;
+            for (File file : files)
+                size += file.length();
+        }
+        return size;
+    }
+
+    /*
+     * Deletes the shards from the given one on.
+     */
+    public static void deleteShards(Path indexDir, int from) {
+        for (int i = from; Files.isDirectory(shardPath(indexDir, i)); i++)
+            deleteRecursively(shardPath(indexDir, i).toFile());
+    }
+
+    static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                deleteRecursively(child);
+        }
+        file.delete();
+    }
+}
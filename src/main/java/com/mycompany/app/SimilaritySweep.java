@@ -0,0 +1,164 @@
+package com.mycompany.app;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.similarities.BM25Similarity;
+import org.apache.lucene.search.similarities.ClassicSimilarity;
+import org.apache.lucene.search.similarities.LMDirichletSimilarity;
+import org.apache.lucene.search.similarities.LMJelinekMercerSimilarity;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/*
+ * Evaluates a grid of similarities and parameters on one index in a single
+ * run. The index is opened once; every configuration gets its own
+ * IndexSearcher over the shared DirectoryReader, and the configurations run
+ * concurrently. Prints MRR, P@1 and query latency per configuration.
+ *
+ * Usage: SimilaritySweep <INDEX> <STEM> <LEMMATIZE> <STOPWORDS> [THREADS]
+ * INDEX may be MultiVariantIndex, see IndexVariant.
+ */
+public class SimilaritySweep {
+
+    private final DirectoryReader reader;
+    private final List<Query> queries = new ArrayList<>();
+    private final List<int[]> goldDocs = new ArrayList<>();
+
+    public SimilaritySweep(DirectoryReader reader, DirectQueryBuilder queryBuilder, List<Clue> clues)
+            throws IOException {
+        this.reader = reader;
+        TitleLookup titles = TitleLookup.build(reader);
+        // the query does not depend on the similarity, so it is built once;
+        // it is null where the clue has too many clauses
+        for (Clue clue : clues) {
+            queries.add(queryBuilder.build(clue.getContent(), clue.getCategories()));
+            goldDocs.add(titles.lookup(clue.getAnswer()));
+        }
+    }
+
+    /*
+     * BM25 k1/b, Jelinek-Mercer lambda, Dirichlet mu and TF-IDF.
+     */
+    public static List<Similarity> defaultGrid() {
+        List<Similarity> grid = new ArrayList<>();
+        for (float k1 : new float[]{0.6f, 0.9f, 1.2f, 1.5f, 2.0f}) {
+            for (float b : new float[]{0.3f, 0.5f, 0.75f, 1.0f}) {
+                grid.add(new BM25Similarity(k1, b));
+            }
+        }
+        for (float lambda : new float[]{0.05f, 0.1f, 0.2f, 0.3f, 0.5f, 0.7f}) {
+            grid.add(new LMJelinekMercerSimilarity(lambda));
+        }
+        for (float mu : new float[]{250f, 500f, 1000f, 2000f, 3000f}) {
+            grid.add(new LMDirichletSimilarity(mu));
+        }
+        grid.add(new ClassicSimilarity());
+        return grid;
+    }
+
+    /*
+     * Runs every clue under one similarity.
+     */
+    public ClueEvaluation evaluate(Similarity similarity) throws IOException {
+        IndexSearcher searcher = new IndexSearcher(reader);
+        searcher.setSimilarity(similarity);
+
+        int[] ranks = new int[queries.size()];
+        long[] latencies = new long[queries.size()];
+        for (int i = 0; i < queries.size(); i++) {
+            long start = System.nanoTime();
+            Query query = queries.get(i);
+            int rank = ClueEvaluation.MAX_RANK; // no query (too many clauses), answer not found
+            if (query != null) {
+                GoldRankCollector collector = new GoldRankCollector(goldDocs.get(i), ClueEvaluation.MAX_RANK);
+                collector.scoreGoldDocs(searcher, query);
+                searcher.search(query, collector);
+                rank = collector.getRank();
+            }
+            latencies[i] = System.nanoTime() - start;
+            ranks[i] = rank;
+        }
+        return ClueEvaluation.of(ranks, latencies);
+    }
+
+    /*
+     * The evaluation of each similarity, in the order of the grid.
+     */
+    public List<ClueEvaluation> evaluateAll(List<Similarity> grid, int threads) throws IOException {
+        ExecutorService executor = ThreadPools.newExecutor(threads, false);
+        try {
+            List<Future<ClueEvaluation>> futures = new ArrayList<>();
+            for (Similarity similarity : grid) {
+                futures.add(executor.submit(() -> evaluate(similarity)));
+            }
+            List<ClueEvaluation> results = new ArrayList<>();
+            for (Future<ClueEvaluation> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("sweep interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("sweep failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("usage: SimilaritySweep <INDEX> <STEM> <LEMMATIZE> <STOPWORDS> [THREADS]");
+            return;
+        }
+        String index = args[0];
+        boolean stem = Boolean.parseBoolean(args[1]);
+        boolean lemmatize = Boolean.parseBoolean(args[2]);
+        boolean stopwords = Boolean.parseBoolean(args[3]);
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        DirectQueryBuilder queryBuilder;
+        if (index.equals(AnswerPlatformRun.MULTI_INDEX)) {
+            IndexVariant variant = IndexVariant.of(stem, lemmatize, stopwords);
+            queryBuilder = new DirectQueryBuilder(variant.buildAnalyzer(), variant.contentField(),
+                    variant.categoriesField());
+        } else {
+            Analyzer analyzer = Indexer.buildCustomAnalyzer(stem, stopwords);
+            queryBuilder = new DirectQueryBuilder(analyzer);
+        }
+        List<Clue> clues = Clue.readAll(new File("src/main/resources/" + AnswerPlatformRun.QUERIES));
+
+        try (DirectoryReader reader = DirectoryReader.open(FSDirectory.open(Paths.get(index)))) {
+            SimilaritySweep sweep = new SimilaritySweep(reader, queryBuilder, clues);
+            List<Similarity> grid = defaultGrid();
+
+            long start = System.nanoTime();
+            List<ClueEvaluation> results = sweep.evaluateAll(grid, threads);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            List<Integer> byMrr = new ArrayList<>();
+            for (int i = 0; i < grid.size(); i++) {
+                byMrr.add(i);
+            }
+            byMrr.sort(Comparator.comparingDouble((Integer i) -> results.get(i).getMrr()).reversed());
+            System.out.printf("%-40s %s%n", "similarity", ClueEvaluation.HEADER);
+            for (int i : byMrr) {
+                System.out.printf("%-40s %s%n", grid.get(i), results.get(i));
+            }
+            System.out.printf("%d configs x %d queries in %.1f s with %d threads%n",
+                    grid.size(), clues.size(), seconds, threads);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.mycompany.app;
+
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.Similarity;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/*
+ * Measures the query-only startup: the time from JVM start to the answer
+ * of the first clue of questions.txt, and the memory in use by then. The
+ * index is only opened, so no CoreNLP model is loaded. For example:
+ *
+ * StartupTime JMStemIndex true false true JMLM
+ *
+ * Also the training run of the class data sharing archive (the cds
+ * profile in pom.xml). An index that does not exist yet is first built from
+ * wiki-example.txt, so the archive covers the indexing classes too; the
+ * times of such a run are not a query-only startup.
+ */
+public class StartupTime {
+
+    public static void main(String[] args) throws IOException {
+        long mainStart = System.nanoTime();
+        long jvmMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        if (args.length < 1) {
+            System.out.println("usage: StartupTime <INDEX> [<STEM> <LEMMATIZE> <STOPWORDS> <SIMILARITY>]");
+            return;
+        }
+        String index = args[0];
+        boolean stem = args.length < 5 || Boolean.parseBoolean(args[1]);
+        boolean lemmatize = args.length >= 5 && Boolean.parseBoolean(args[2]);
+        boolean stopwords = args.length < 5 || Boolean.parseBoolean(args[3]);
+        Similarity similarity = args.length < 5 ? AnswerPlatformRun.SIMILARITY
+                : AnswerPlatformRun.parseSimilarity(args[4], AnswerPlatformRun.SIMILARITY);
+
+        long start = System.nanoTime();
+        boolean built = !Files.exists(Paths.get(index));
+        if (built) {
+            Indexer indexer = new Indexer(index, stem, lemmatize, stopwords, similarity);
+            indexer.addWikiFile("wiki-example.txt");
+            indexer.close();
+        }
+        long buildNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        AnswerEngine engine = new AnswerEngine(index, stem, lemmatize, stopwords, similarity);
+        long openNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<Clue> clues = Clue.readAll(new File("src/main/resources/" + AnswerPlatformRun.QUERIES));
+        Clue clue = clues.get(0);
+        TopDocs top = engine.search(clue.getContent(), clue.getCategories(), 10);
+        String answer = top.scoreDocs.length == 0 ? null : engine.getTitle(top.scoreDocs[0].doc);
+        long answerNanos = System.nanoTime() - start;
+        long totalMillis = jvmMillis + (System.nanoTime() - mainStart) / 1_000_000;
+
+        Runtime runtime = Runtime.getRuntime();
+        System.out.println("first answer: " + answer);
+        System.out.printf("JVM start to main:     %6d ms%n", jvmMillis);
+        if (built)
+            System.out.printf("index built:           %6.0f ms (not a query-only startup)%n", buildNanos / 1e6);
+        System.out.printf("engine opened:         %6.0f ms%n", openNanos / 1e6);
+        System.out.printf("first clue answered:   %6.0f ms%n", answerNanos / 1e6);
+        System.out.printf("JVM start to answer:   %6d ms%n", totalMillis);
+        System.out.printf("classes loaded:        %6d%n",
+                ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount());
+        System.out.printf("heap used:             %6.1f MB%n", (runtime.totalMemory() - runtime.freeMemory()) / 1e6);
+        System.out.printf("RSS (peak):            %6.1f MB (%.1f MB)%n", procStatus("VmRSS") / 1e3,
+                procStatus("VmHWM") / 1e3);
+        engine.close();
+    }
+
+    /*
+     * A kB line of /proc/self/status, such as VmRSS, or -1 where there is
+     * none (not Linux).
+     */
+    private static long procStatus(String key) {
+        Path status = Paths.get("/proc/self/status");
+        try {
+            for (String line : Files.readAllLines(status, StandardCharsets.UTF_8)) {
+                if (line.startsWith(key + ":"))
+                    return Long.parseLong(line.substring(key.length() + 1).trim().split("\\s+")[0]);
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not available
+        }
+        return -1;
+    }
+}
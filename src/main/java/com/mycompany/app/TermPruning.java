@@ -0,0 +1,131 @@
+package com.mycompany.app;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * What AnswerEngine does with the common terms of a clue query, the ones in
+ * more than the engine's max DF ratio (EngineOptions.maxDfRatio) of the
+ * documents with the field (on the indices that keep stopwords: "the",
+ * "of", "in", ...). Only the SHOULD term clauses of the query are looked
+ * at.
+ *
+ *   NONE          every term is searched (the original query)
+ *   DROP          common terms are left out of the query
+ *   COMMON_TERMS  the rest of the query must match, and common terms only
+ *                 add to the score of those documents, like Lucene's
+ *                 CommonTermsQuery. A document that matches gets the same
+ *                 score as without pruning (up to float rounding); only the
+ *                 documents that match nothing but common terms are not
+ *                 found. A query of common terms only is left as it is.
+ *
+ * Either way the long postings of the common terms are no longer walked
+ * on their own.
+ */
+public enum TermPruning {
+    NONE, DROP, COMMON_TERMS;
+
+    /*
+     * The pruned query, or the same query if nothing is pruned. The document
+     * frequencies are read from the reader.
+     */
+    public Query prune(Query query, IndexReader reader, float maxDfRatio) throws IOException {
+        if (this == NONE || !(query instanceof BooleanQuery))
+            return query;
+        BooleanQuery booleanQuery = (BooleanQuery) query;
+        List<BooleanClause> common = new ArrayList<>();
+        List<BooleanClause> rare = new ArrayList<>(); // the other SHOULD clauses
+        List<BooleanClause> other = new ArrayList<>();
+        for (BooleanClause clause : booleanQuery.clauses()) {
+            if (clause.getOccur() != BooleanClause.Occur.SHOULD)
+                other.add(clause);
+            else if (clause.getQuery() instanceof TermQuery
+                    && isCommon(((TermQuery) clause.getQuery()).getTerm(), reader, maxDfRatio))
+                common.add(clause);
+            else
+                rare.add(clause);
+        }
+        if (common.isEmpty() || rare.isEmpty())
+            return query;
+
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (BooleanClause clause : other) {
+            builder.add(clause);
+        }
+        if (this == DROP) {
+            for (BooleanClause clause : rare) {
+                builder.add(clause);
+            }
+            builder.setMinimumNumberShouldMatch(Math.min(booleanQuery.getMinimumNumberShouldMatch(), rare.size()));
+            return builder.build();
+        }
+        BooleanQuery.Builder rareQuery = new BooleanQuery.Builder();
+        for (BooleanClause clause : rare) {
+            rareQuery.add(clause);
+        }
+        builder.add(rareQuery.build(), BooleanClause.Occur.MUST);
+        for (BooleanClause clause : common) {
+            builder.add(clause);
+        }
+        return builder.build();
+    }
+
+    private static boolean isCommon(Term term, IndexReader reader, float maxDfRatio) throws IOException {
+        int docCount = reader.getDocCount(term.field());
+        if (docCount <= 0)
+            docCount = reader.maxDoc();
+        return docCount > 0 && reader.docFreq(term) > maxDfRatio * docCount;
+    }
+
+    /*
+     * Runs questions.txt on one index with every pruning mode at a few DF
+     * ratios, and prints MRR, P@1 and query latency, for example:
+     *
+     * TermPruning JMStemIndex true false true JMLM
+     *
+     * Run it on each index; a no-stopwords index with NONE is the speed to
+     * compare with.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.out.println("usage: TermPruning <INDEX> <STEM> <LEMMATIZE> <STOPWORDS> <SIMILARITY> [RATIO...]");
+            return;
+        }
+        List<Float> ratios = new ArrayList<>();
+        for (int i = 5; i < args.length; i++) {
+            ratios.add(Float.parseFloat(args[i]));
+        }
+        if (ratios.isEmpty()) {
+            ratios.add(0.05F);
+            ratios.add(0.1F);
+            ratios.add(0.2F);
+            ratios.add(0.4F);
+        }
+        AnswerEngine engine = new AnswerEngine(args[0], Boolean.parseBoolean(args[1]), Boolean.parseBoolean(args[2]),
+                Boolean.parseBoolean(args[3]), AnswerPlatformRun.parseSimilarity(args[4], AnswerPlatformRun.SIMILARITY));
+        engine.setResultCache(null);
+        List<Clue> clues = Clue.readAll(new File("src/main/resources/" + AnswerPlatformRun.QUERIES));
+
+        ClueEvaluation.run(engine, clues); // warm-up
+        System.out.printf("%-14s %6s %s%n", "pruning", "ratio", ClueEvaluation.HEADER);
+        engine.setTermPruning(NONE);
+        System.out.printf("%-14s %6s %s%n", NONE, "-", ClueEvaluation.run(engine, clues));
+        for (TermPruning pruning : new TermPruning[]{DROP, COMMON_TERMS}) {
+            engine.setTermPruning(pruning);
+            for (float ratio : ratios) {
+                engine.setMaxDfRatio(ratio);
+                System.out.printf("%-14s %6.2f %s%n", pruning, ratio, ClueEvaluation.run(engine, clues));
+            }
+        }
+        engine.close();
+    }
+}
@@ -0,0 +1,46 @@
+package com.mycompany.app;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Executors for the concurrent query paths.
+ */
+public class ThreadPools {
+
+    private ThreadPools() {
+    }
+
+    /*
+     * Returns a fixed pool of platform threads, or a virtual thread per task
+     * executor if virtual is true. Virtual threads need Java 21; on older
+     * runtimes this falls back to platform threads.
+     */
+    public static ExecutorService newExecutor(int threads, boolean virtual) {
+        if (virtual) {
+            try {
+                Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) m.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                System.out.println("virtual threads not available on Java "
+                        + System.getProperty("java.version") + ", using platform threads");
+            }
+        }
+        return Executors.newFixedThreadPool(Math.max(1, threads));
+    }
+
+    /*
+     * A fixed pool of daemon threads named name-1, name-2, ..., for pools
+     * that live as long as an object which may never be closed.
+     */
+    public static ExecutorService newDaemonExecutor(int threads, String name) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
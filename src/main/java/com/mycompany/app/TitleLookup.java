@@ -0,0 +1,95 @@
+package com.mycompany.app;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Maps answers to the doc ids of the articles with that title, without
+ * loading any stored fields. Built once per reader from the terms of the
+ * "title" StringField.
+ *
+ * Titles are matched the same way as AnswerPlatform.matchAnswers: without
+ * the surrounding "[[ ]]" and case-insensitive.
+ */
+public class TitleLookup {
+
+    private final Map<String, int[]> docsByTitle;
+
+    private TitleLookup(Map<String, int[]> docsByTitle) {
+        this.docsByTitle = docsByTitle;
+    }
+
+    public static TitleLookup build(IndexReader reader) throws IOException {
+        Map<String, int[]> docsByTitle = new HashMap<>();
+        PostingsEnum postings = null;
+        for (LeafReaderContext leaf : reader.leaves()) {
+            LeafReader leafReader = leaf.reader();
+            Terms terms = leafReader.terms("title");
+            if (terms == null)
+                continue;
+            Bits liveDocs = leafReader.getLiveDocs();
+            TermsEnum termsEnum = terms.iterator();
+            BytesRef term;
+            while ((term = termsEnum.next()) != null) {
+                String title = term.utf8ToString();
+                String key = title.substring(2, title.length() - 2).toLowerCase();
+                postings = termsEnum.postings(postings, PostingsEnum.NONE);
+                int doc;
+                while ((doc = postings.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+                    if (liveDocs == null || liveDocs.get(doc))
+                        docsByTitle.merge(key, new int[]{leaf.docBase + doc}, TitleLookup::concat);
+                }
+            }
+        }
+        return new TitleLookup(docsByTitle);
+    }
+
+    /*
+     * Returns the doc ids of every article matching one of the expected
+     * answers. The expected answer may include '|' between possible
+     * answers.
+     */
+    public int[] lookup(String expecting) {
+        List<int[]> found = new ArrayList<>();
+        int count = 0;
+        for (String ans : expecting.split("\\|")) {
+            int[] docs = docsByTitle.get(ans.trim().toLowerCase());
+            if (docs != null) {
+                found.add(docs);
+                count += docs.length;
+            }
+        }
+        int[] result = new int[count];
+        int i = 0;
+        for (int[] docs : found) {
+            System.arraycopy(docs, 0, result, i, docs.length);
+            i += docs.length;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    public int size() {
+        return docsByTitle.size();
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
@@ -0,0 +1,49 @@
+package com.mycompany.app;
+
+/*
+ * One wikipedia article as read out of an aggregated wiki file. The
+ * categories line is kept as it appears in the file (including the
+ * "CATEGORIES:" prefix), so the Indexer can decide whether to lemmatize it.
+ */
+public class WikiArticle {
+
+    private final String title;
+    private final String content;
+    private final String categoriesLine;
+    private final String source;
+
+    public WikiArticle(String title, String content, String categoriesLine) {
+        this(title, content, categoriesLine, "");
+    }
+
+    public WikiArticle(String title, String content, String categoriesLine, String source) {
+        this.title = title;
+        this.content = content;
+        this.categoriesLine = categoriesLine;
+        this.source = source;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    /*
+     * The raw categories line, or an empty string if no categories line has
+     * been seen yet in the file.
+     */
+    public String getCategoriesLine() {
+        return categoriesLine;
+    }
+
+    /*
+     * Name of the file the article was read from, or an empty string if not
+     * known.
+     */
+    public String getSource() {
+        return source;
+    }
+}
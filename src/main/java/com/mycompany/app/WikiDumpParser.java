@@ -0,0 +1,343 @@
+package com.mycompany.app;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+/*
+ * Streaming replacement for WikiFileReader. Reads the file through a
+ * channel into one reused byte buffer, finds title and categories lines
+ * directly in the bytes, and decodes content lines straight into one reused
+ * char buffer. The content of an article is handed out as a CharSequence or
+ * Reader over that buffer, so no String is built for it.
+ *
+ * Produces the same articles as WikiFileReader (see there for the quirks),
+ * with two differences: the file is always read as UTF-8, and only \n, \r\n
+ * and \r end a line.
+ *
+ * Compressed files and archives (see DecompressingChannel) are decompressed
+ * on another thread while they are parsed. Every file in an archive is
+ * parsed as if it was a file of its own, with "archive!entry" (the archive's
+ * name and the entry's path in it) as the source of its articles. A filter
+ * on the source skips whole files, see open(File, Predicate).
+ *
+ * The title, content and categories of an article are only valid until the
+ * next call to next().
+ */
+public class WikiDumpParser implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte[] FILE_PREFIX = "[[File:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CATEGORIES_PREFIX = "CATEGORIES:".getBytes(StandardCharsets.US_ASCII);
+
+    private final ReadableByteChannel channel;
+    private DecompressingChannel entries; // null unless reading a compressed file
+    private String archive; // null unless reading an archive
+    private Predicate<String> sources = source -> true;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private boolean eof;
+
+    // the current line is bytes[lineStart, lineEnd)
+    private int lineStart;
+    private int lineEnd;
+
+    private char[] content = new char[BUFFER_SIZE];
+    private int contentLength;
+    private final ContentReader contentReader = new ContentReader();
+
+    private String nextTitle = WikiFileReader.NO_TITLE;
+    private String title;
+    private String categoriesLine = "";
+    private String source = "";
+
+    public WikiDumpParser(ReadableByteChannel channel) {
+        this.channel = channel;
+        bytes.flip(); // start out empty, ready for reading
+    }
+
+    public static WikiDumpParser open(File file) throws IOException {
+        return open(file, source -> true);
+    }
+
+    /*
+     * Opens the file, parsing only the files (the file itself, or the
+     * entries of an archive) whose source the filter accepts. Skipped
+     * entries are still decompressed, but not parsed.
+     */
+    public static WikiDumpParser open(File file, Predicate<String> sources) throws IOException {
+        if (DecompressingChannel.isCompressed(file)) {
+            DecompressingChannel channel = DecompressingChannel.open(file);
+            WikiDumpParser parser = new WikiDumpParser(channel);
+            parser.entries = channel;
+            parser.archive = DecompressingChannel.isArchive(file) ? file.getName() : null;
+            parser.sources = sources;
+            parser.eof = !parser.nextEntry();
+            return parser;
+        }
+        WikiDumpParser parser = new WikiDumpParser(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+        parser.source = file.getName();
+        parser.eof = !sources.test(parser.source);
+        return parser;
+    }
+
+    /*
+     * Source of the articles: the name of the file being parsed, or
+     * "archive!entry" in an archive. Empty if the parser was given a
+     * channel.
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /*
+     * Moves on to the next article. Returns false once the file (or the last
+     * file of an archive) is done.
+     */
+    public boolean next() throws IOException {
+        contentLength = 0;
+        while (true) {
+            if (!nextLine()) {
+                if (entries == null || !nextEntry())
+                    return false;
+                startEntry();
+                continue;
+            }
+            byte[] b = bytes.array();
+            int length = lineEnd - lineStart;
+
+            // if it's a title
+            if (length > 2 && b[lineStart] == '[' && b[lineStart + 1] == '['
+                    && !startsWith(b, lineStart, length, FILE_PREFIX)) {
+                title = nextTitle;
+                nextTitle = new String(b, lineStart, length, StandardCharsets.UTF_8);
+                return true;
+
+                // if it's a categories line
+            } else if (startsWith(b, lineStart, length, CATEGORIES_PREFIX)) {
+                categoriesLine = new String(b, lineStart, length, StandardCharsets.UTF_8);
+
+                // it's just a content line
+            } else {
+                appendContent(b, lineStart, length);
+            }
+        }
+    }
+
+    /*
+     * Moves the channel to the next entry the filter accepts.
+     */
+    private boolean nextEntry() throws IOException {
+        while (entries.nextEntry()) {
+            source = archive == null ? entries.getEntry() : archive + "!" + entries.getEntry();
+            if (sources.test(source))
+                return true;
+        }
+        return false;
+    }
+
+    /*
+     * Starts on the next file of an archive as a new parser would. The last
+     * article of the previous file is dropped, like at the end of a file.
+     */
+    private void startEntry() {
+        bytes.clear();
+        bytes.flip();
+        eof = false;
+        contentLength = 0;
+        nextTitle = WikiFileReader.NO_TITLE;
+        categoriesLine = "";
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public CharSequence getContent() {
+        return CharBuffer.wrap(content, 0, contentLength);
+    }
+
+    /*
+     * The content as a Reader. The same Reader instance is returned for every
+     * article, rewound to the start of the current content.
+     */
+    public Reader getContentReader() {
+        contentReader.position = 0;
+        return contentReader;
+    }
+
+    public String getCategoriesLine() {
+        return categoriesLine;
+    }
+
+    /*
+     * Copies the current article out, for when it has to outlive next().
+     */
+    public WikiArticle toArticle() {
+        return new WikiArticle(title, new String(content, 0, contentLength), categoriesLine, source);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /*
+     * Finds the next line in the byte buffer, reading more of the file when
+     * the line is not complete yet.
+     */
+    private boolean nextLine() throws IOException {
+        while (true) {
+            byte[] b = bytes.array();
+            int start = bytes.position();
+            int limit = bytes.limit();
+            for (int i = start; i < limit; i++) {
+                if (b[i] == '\n' || b[i] == '\r') {
+                    if (b[i] == '\r' && i + 1 == limit && !eof)
+                        break; // could be \r\n split over two reads
+                    lineStart = start;
+                    lineEnd = i;
+                    int next = i + 1;
+                    if (b[i] == '\r' && next < limit && b[next] == '\n')
+                        next++;
+                    bytes.position(next);
+                    return true;
+                }
+            }
+            if (eof) {
+                if (start == limit)
+                    return false;
+                // last line without a line break
+                lineStart = start;
+                lineEnd = limit;
+                bytes.position(limit);
+                return true;
+            }
+            fill();
+        }
+    }
+
+    /*
+     * Keeps the unfinished line and reads more bytes after it, growing the
+     * buffer if the line takes up all of it.
+     */
+    private void fill() throws IOException {
+        bytes.compact();
+        if (!bytes.hasRemaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(bytes.capacity() * 2);
+            bytes.flip();
+            larger.put(bytes);
+            bytes = larger;
+        }
+        if (channel.read(bytes) < 0)
+            eof = true;
+        bytes.flip();
+    }
+
+    private void appendContent(byte[] b, int offset, int length) {
+        // utf-8 never decodes to more chars than bytes
+        if (contentLength + length > content.length)
+            content = Arrays.copyOf(content, Math.max(content.length * 2, contentLength + length));
+        CharBuffer out = CharBuffer.wrap(content, contentLength, content.length - contentLength);
+        decoder.reset();
+        decoder.decode(ByteBuffer.wrap(b, offset, length), out, true);
+        decoder.flush(out);
+        contentLength = out.position();
+    }
+
+    private static boolean startsWith(byte[] b, int offset, int length, byte[] prefix) {
+        if (length < prefix.length)
+            return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (b[offset + i] != prefix[i])
+                return false;
+        }
+        return true;
+    }
+
+    /*
+     * Reader over the content buffer of the current article.
+     */
+    private class ContentReader extends Reader {
+        private int position;
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (position >= contentLength)
+                return -1;
+            int n = Math.min(len, contentLength - position);
+            System.arraycopy(content, position, cbuf, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            // the buffer belongs to the parser
+        }
+    }
+
+    /*
+     * Compares the throughput of WikiFileReader (Scanner) and this parser on
+     * the same files, and checks that both produce the same articles.
+     * Arguments are files in the resources folder, wiki-example.txt by
+     * default.
+     */
+    public static void main(String[] args) throws IOException {
+        String[] fileNames = args.length > 0 ? args : new String[]{"wiki-example.txt"};
+        int rounds = 5;
+
+        for (int round = 0; round < rounds; round++) {
+            long scannerNanos = 0, parserNanos = 0, bytesRead = 0;
+            long scannerHash = 0, parserHash = 0;
+            int articles = 0;
+            for (String fileName : fileNames) {
+                File file = new File("src/main/resources/" + fileName);
+                bytesRead += file.length();
+
+                long start = System.nanoTime();
+                try (WikiFileReader reader = new WikiFileReader(file)) {
+                    WikiArticle article;
+                    while ((article = reader.next()) != null) {
+                        scannerHash = 31 * scannerHash + article.getTitle().hashCode()
+                                + article.getContent().hashCode() + article.getCategoriesLine().hashCode();
+                    }
+                }
+                scannerNanos += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                try (WikiDumpParser parser = WikiDumpParser.open(file)) {
+                    while (parser.next()) {
+                        // same hash as String.hashCode, without making the String
+                        CharSequence content = parser.getContent();
+                        int contentHash = 0;
+                        for (int i = 0; i < content.length(); i++)
+                            contentHash = 31 * contentHash + content.charAt(i);
+                        parserHash = 31 * parserHash + parser.getTitle().hashCode()
+                                + contentHash + parser.getCategoriesLine().hashCode();
+                        articles++;
+                    }
+                }
+                parserNanos += System.nanoTime() - start;
+            }
+            double mb = bytesRead / (1024.0 * 1024.0);
+            System.out.printf("round %d: %d articles, %.1f MB | Scanner %.1f MB/s | parser %.1f MB/s | same output: %b%n",
+                    round, articles, mb, mb / (scannerNanos / 1e9), mb / (parserNanos / 1e9),
+                    scannerHash == parserHash);
+        }
+    }
+}
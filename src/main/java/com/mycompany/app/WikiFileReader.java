@@ -0,0 +1,72 @@
+package com.mycompany.app;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
+
+/*
+ * Breaks down a processed file that contains many wikipedia articles into
+ * separate articles, one at a time.
+ *
+ * Keeps the behaviour the index was originally built with: an article is
+ * emitted when the next title line is found (so the text before the first
+ * title comes out as "NO TITLE ASSIGNED", and the last article of a file is
+ * never emitted), content lines are appended without a separator, and the
+ * categories line carries over to following articles that have none.
+ */
+public class WikiFileReader implements Closeable {
+
+    public static final String NO_TITLE = "NO TITLE ASSIGNED";
+
+    private final Scanner scanner;
+
+    private String title = NO_TITLE;
+    private String categoriesLine = "";
+
+    public WikiFileReader(File file) throws FileNotFoundException {
+        this.scanner = new Scanner(file);
+    }
+
+    /*
+     * Returns the next article in the file, or null once the file is done.
+     */
+    public WikiArticle next() {
+        StringBuilder sb = new StringBuilder();
+        String line;
+
+        while (scanner.hasNextLine()) {
+            line = scanner.nextLine();
+
+            // if it's a title
+            if (isTitleLine(line)) {
+                // fixme: what if there is filler text to start the file?
+                WikiArticle article = new WikiArticle(title, sb.toString(), categoriesLine);
+                // start processing the next article
+                title = line;
+                return article;
+
+                // if it's a categories line
+            } else if (line.startsWith("CATEGORIES:")) {
+                categoriesLine = line;
+
+                // it's just a content line
+            } else {
+                sb.append(line);
+            }
+        }
+        return null;
+    }
+
+    public static boolean isTitleLine(String line) {
+        return line.length() > 2
+                && line.charAt(0) == '['
+                && line.charAt(1) == '['
+                && !line.startsWith("[[File:");
+    }
+
+    @Override
+    public void close() {
+        scanner.close();
+    }
+}